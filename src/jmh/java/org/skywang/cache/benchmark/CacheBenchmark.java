@@ -0,0 +1,188 @@
+package org.skywang.cache.benchmark;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.skywang.cache.BufferedLruCache;
+import org.skywang.cache.ClockCache;
+import org.skywang.cache.ConcurrentLruCache;
+import org.skywang.cache.LruCacheWheel;
+import org.skywang.cache.StripedLruCache;
+import org.skywang.cache.TinyLfuCache;
+
+/**
+ * throughput & latency of the caches under different key distributions and read/write mixes
+ * (1) readOnly: 100% get()
+ * (2) readWrite: 75% get(), 25% put()
+ * (3) writeOnly: 100% put()
+ * a get() miss is not followed by a put(), so the read/write mix stays fixed.
+ *
+ * the thread count is set by CacheBenchmarkRunner, LruCacheWheel is not thread safe and only runs
+ * w/ a single thread, ConcurrentLruCacheWheel is LruCacheWheel in its concurrent mode.
+ */
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+  private final static int KEY_COUNT = 1 << 20;
+  private final static int KEY_MASK = KEY_COUNT - 1;
+
+  @Param({"LruCacheWheel", "ConcurrentLruCacheWheel", "ConcurrentLruCache", "StripedLruCache",
+      "BufferedLruCache", "TinyLfuCache", "ClockCache", "ClockProCache"})
+  public String cache;
+
+  @Param({"ZIPFIAN", "UNIFORM", "SCAN"})
+  public KeyDistribution distribution;
+
+  @Param({"16384"})
+  public int capacity;
+
+  private BenchmarkCache<Integer, Integer> target;
+  private Integer[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadIndex {
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      // spread the threads over the key array
+      index = new Random().nextInt(KEY_COUNT);
+    }
+
+    int next() {
+      return index++ & KEY_MASK;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = distribution.generate(KEY_COUNT, 4 * capacity, new Random(42));
+    target = create(cache, capacity);
+    // warm the cache w/ the head of the key array
+    for (int i = 0; i < capacity; i++) {
+      target.put(keys[i], keys[i]);
+    }
+  }
+
+  @Benchmark
+  public Integer readOnly(ThreadIndex thread) {
+    return target.get(keys[thread.next()]);
+  }
+
+  @Benchmark
+  public Integer readWrite(ThreadIndex thread) {
+    int index = thread.next();
+    Integer key = keys[index];
+    if ((index & 3) == 0) {
+      target.put(key, key);
+      return key;
+    }
+    return target.get(key);
+  }
+
+  @Benchmark
+  public Integer writeOnly(ThreadIndex thread) {
+    Integer key = keys[thread.next()];
+    target.put(key, key);
+    return key;
+  }
+
+  // the common get/put surface of the benchmarked caches
+  interface BenchmarkCache<K, V> {
+    V get(K key);
+
+    void put(K key, V value);
+  }
+
+  static BenchmarkCache<Integer, Integer> create(String name, int capacity) {
+    if ("LruCacheWheel".equals(name) || "ConcurrentLruCacheWheel".equals(name)) {
+      final LruCacheWheel<Integer, Integer> lru =
+          new LruCacheWheel<Integer, Integer>(capacity, "ConcurrentLruCacheWheel".equals(name));
+      return new BenchmarkCache<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return lru.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+          lru.put(key, value);
+        }
+      };
+    } else if ("ConcurrentLruCache".equals(name)) {
+      final ConcurrentLruCache<Integer, Integer> lru =
+          new ConcurrentLruCache<Integer, Integer>(capacity);
+      return new BenchmarkCache<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return lru.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+          lru.put(key, value);
+        }
+      };
+    } else if ("StripedLruCache".equals(name)) {
+      final StripedLruCache<Integer, Integer> lru =
+          new StripedLruCache<Integer, Integer>(capacity, 64);
+      return new BenchmarkCache<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return lru.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+          lru.put(key, value);
+        }
+      };
+    } else if ("BufferedLruCache".equals(name)) {
+      final BufferedLruCache<Integer, Integer> lru =
+          new BufferedLruCache<Integer, Integer>(capacity);
+      return new BenchmarkCache<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return lru.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+          lru.put(key, value);
+        }
+      };
+    } else if ("TinyLfuCache".equals(name)) {
+      final TinyLfuCache<Integer, Integer> tinyLfu = new TinyLfuCache<Integer, Integer>(capacity);
+      return new BenchmarkCache<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return tinyLfu.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+          tinyLfu.put(key, value);
+        }
+      };
+    } else if ("ClockCache".equals(name) || "ClockProCache".equals(name)) {
+      final ClockCache<Integer, Integer> clock =
+          new ClockCache<Integer, Integer>(capacity, "ClockProCache".equals(name));
+      return new BenchmarkCache<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return clock.get(key);
+        }
+
+        @Override
+        public void put(Integer key, Integer value) {
+          clock.put(key, value);
+        }
+      };
+    }
+    throw new IllegalArgumentException("unknown cache: " + name);
+  }
+}
@@ -0,0 +1,65 @@
+package org.skywang.cache.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs CacheBenchmark at 1, 4, 16 and 64 threads
+ * (1) throughput (ops/us) and sampled latency (us/op), the sample mode reports the p99
+ * (2) the gc profiler reports the allocation rate (gc.alloc.rate.norm is bytes per operation)
+ * (3) the results of each thread count are written to target/jmh-<threads>-threads.json
+ *
+ * run w/ "mvn -P jmh -DskipTests verify", jmh command line options can be passed w/
+ * -Djmh.args="...", e.g. -Djmh.args="-f 1 -wi 2 -i 3 -p distribution=ZIPFIAN", a benchmark
+ * regex (e.g. -Djmh.args="readOnly") runs only the matching benchmarks
+ */
+public class CacheBenchmarkRunner {
+  private final static int[] THREADS = {1, 4, 16, 64};
+  // the caches that are safe to share between threads
+  private final static String[] CONCURRENT_CACHES =
+      {"ConcurrentLruCacheWheel", "ConcurrentLruCache", "StripedLruCache", "BufferedLruCache",
+          "TinyLfuCache", "ClockCache", "ClockProCache"};
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    for (int threads : THREADS) {
+      ChainedOptionsBuilder options = new OptionsBuilder()
+          .parent(commandLine)
+          .mode(Mode.Throughput)
+          .mode(Mode.SampleTime)
+          .threads(threads)
+          .addProfiler(GCProfiler.class)
+          .resultFormat(ResultFormatType.JSON)
+          .result("target/jmh-" + threads + "-threads.json");
+      // all the cache benchmarks unless a regex on the command line narrows the run
+      if (commandLine.getIncludes().isEmpty()) {
+        options.include(CacheBenchmark.class.getSimpleName());
+      }
+      // shorter defaults than jmh's own, the command line still wins
+      if (!commandLine.getForkCount().hasValue()) {
+        options.forks(1);
+      }
+      if (!commandLine.getWarmupIterations().hasValue()) {
+        options.warmupIterations(3);
+      }
+      if (!commandLine.getMeasurementIterations().hasValue()) {
+        options.measurementIterations(5);
+      }
+      if (!commandLine.getTimeUnit().hasValue()) {
+        // ops/us for the throughput, us/op for the latency percentiles
+        options.timeUnit(TimeUnit.MICROSECONDS);
+      }
+      if (threads > 1 && !commandLine.getParameter("cache").hasValue()) {
+        options.param("cache", CONCURRENT_CACHES);
+      }
+      new Runner(options.build()).run();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.skywang.cache.benchmark;
+
+import java.util.Random;
+
+/**
+ * key access patterns of the cache benchmarks, the keys are generated up front so that the
+ * measured loop only indexes an array
+ */
+public enum KeyDistribution {
+  // a few keys are very hot (skew 0.99, as in YCSB), the hot keys are scattered over the space
+  ZIPFIAN {
+    @Override
+    Integer[] generate(int count, int keySpace, Random random) {
+      ZipfianGenerator zipfian = new ZipfianGenerator(keySpace, 0.99);
+      Integer[] keys = new Integer[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = scramble(zipfian.next(random), keySpace);
+      }
+      return keys;
+    }
+  },
+  // every key is equally likely
+  UNIFORM {
+    @Override
+    Integer[] generate(int count, int keySpace, Random random) {
+      Integer[] keys = new Integer[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = random.nextInt(keySpace);
+      }
+      return keys;
+    }
+  },
+  // zipfian hot keys interleaved 1:1 w/ a sequential scan over keys that are never repeated soon
+  SCAN {
+    @Override
+    Integer[] generate(int count, int keySpace, Random random) {
+      ZipfianGenerator zipfian = new ZipfianGenerator(keySpace, 0.99);
+      Integer[] keys = new Integer[count];
+      int scan = keySpace;
+      for (int i = 0; i < count; i++) {
+        if ((i & 1) == 0) {
+          keys[i] = scramble(zipfian.next(random), keySpace);
+        } else {
+          keys[i] = scan++;
+        }
+      }
+      return keys;
+    }
+  };
+
+  abstract Integer[] generate(int count, int keySpace, Random random);
+
+  private static int scramble(long item, int keySpace) {
+    long h = item * 0x9E3779B97F4A7C15L;
+    h ^= (h >>> 32);
+    return (int) ((h & Long.MAX_VALUE) % keySpace);
+  }
+
+  // zipfian item generator of Gray et al. "Quickly Generating Billion-Record Synthetic Databases"
+  private static final class ZipfianGenerator {
+    private final long items;
+    private final double theta;
+    private final double zetan;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianGenerator(long items, double theta) {
+      this.items = items;
+      this.theta = theta;
+      this.zetan = zeta(items, theta);
+      this.alpha = 1.0 / (1.0 - theta);
+      this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+    }
+
+    long next(Random random) {
+      double u = random.nextDouble();
+      double uz = u * zetan;
+      if (uz < 1.0) {
+        return 0;
+      }
+      if (uz < 1.0 + Math.pow(0.5, theta)) {
+        return 1;
+      }
+      return (long) (items * Math.pow(eta * u - eta + 1, alpha));
+    }
+
+    private static double zeta(long n, double theta) {
+      double sum = 0;
+      for (long i = 0; i < n; i++) {
+        sum += 1 / Math.pow(i + 1, theta);
+      }
+      return sum;
+    }
+  }
+}
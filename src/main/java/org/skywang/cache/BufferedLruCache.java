@@ -0,0 +1,228 @@
+package org.skywang.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * a LRU cache whose reads take no contended lock
+ * (1) entries are looked up in a ConcurrentHashMap, so get() is lock free
+ * (2) a hit is recorded in a lossy striped ReadBuffer instead of re-linking the recency list
+ * (3) writes, and readers that find a full buffer, replay the recorded hits into the recency list
+ * in batches under a lock, readers only tryLock() so they never wait for each other
+ *
+ * the doubly-linked recency list is the same as in LruCacheWheel,
+ * null <-- Head <--> node(1) <--> node(2) <--> node(3) <--> node(4) <--> Tail --> null
+ * eviction order is approximately LRU, a hit dropped by a full buffer is simply not promoted.
+ */
+public class BufferedLruCache<K, V> {
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+  private final ReadBuffer<Node<K, V>> readBuffer = new ReadBuffer<Node<K, V>>();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final int capacity;
+
+  // recency list, guarded by the evictionLock
+  private final Node<K, V> head;
+  private final Node<K, V> tail;
+
+  private final ReadBuffer.Consumer<Node<K, V>> accessReplayer =
+      new ReadBuffer.Consumer<Node<K, V>>() {
+        @Override
+        public void accept(Node<K, V> node) {
+          if (node.linked) {
+            unlink(node);
+            linkAfterHead(node);
+          }
+        }
+      };
+
+  public BufferedLruCache(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity can not be negative: " + capacity);
+    }
+    this.capacity = capacity;
+    this.data = new ConcurrentHashMap<K, Node<K, V>>(capacity);
+    head = new Node<K, V>(null, null);
+    tail = new Node<K, V>(null, null);
+    head.next = tail;
+    tail.prev = head;
+  }
+
+  public V get(K key) {
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    if (readBuffer.offer(node)) {
+      tryDrain();
+    }
+    return node.value;
+  }
+
+  public V put(K key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value can not be null");
+    }
+    if (capacity == 0) {
+      return null;
+    }
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      Node<K, V> node = data.get(key);
+      if (node != null) {
+        V oldValue = node.value;
+        node.value = value;
+        unlink(node);
+        linkAfterHead(node);
+        return oldValue;
+      }
+      node = new Node<K, V>(key, value);
+      data.put(key, node);
+      linkAfterHead(node);
+      while (data.size() > capacity) {
+        Node<K, V> eldest = tail.prev;
+        data.remove(eldest.key, eldest);
+        unlink(eldest);
+      }
+      return null;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public V remove(K key) {
+    evictionLock.lock();
+    try {
+      Node<K, V> node = data.remove(key);
+      if (node == null) {
+        return null;
+      }
+      unlink(node);
+      return node.value;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public boolean containsKey(K key) {
+    return data.containsKey(key);
+  }
+
+  public int size() {
+    return data.size();
+  }
+
+  public void clear() {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      for (Node<K, V> node : data.values()) {
+        node.linked = false;
+      }
+      data.clear();
+      head.next = tail;
+      tail.prev = head;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  // replay the pending hits, entries are returned from least to most recently used
+  public Collection<Map.Entry<K, V>> getAll() {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+      List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>(data.size());
+      for (Node<K, V> node = tail.prev; node != head; node = node.prev) {
+        result.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value));
+      }
+      return result;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  // force the buffered hits into the recency list
+  public void cleanUp() {
+    evictionLock.lock();
+    try {
+      drainReadBuffer();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void tryDrain() {
+    if (evictionLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void drainReadBuffer() {
+    readBuffer.drainTo(accessReplayer);
+  }
+
+  private void linkAfterHead(Node<K, V> node) {
+    node.next = head.next;
+    node.prev = head;
+    head.next.prev = node;
+    head.next = node;
+    node.linked = true;
+  }
+
+  private void unlink(Node<K, V> node) {
+    if (!node.linked) {
+      return;
+    }
+    node.next.prev = node.prev;
+    node.prev.next = node.next;
+    node.prev = null;
+    node.next = null;
+    node.linked = false;
+  }
+
+
+  private static final class Node<K, V> {
+    private final K key;
+    private volatile V value;
+    // guarded by the evictionLock
+    private Node<K, V> prev;
+    private Node<K, V> next;
+    private boolean linked;
+
+    Node(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+
+  public static void main(String[] args) {
+    BufferedLruCache<String, Integer> cache = new BufferedLruCache<String, Integer>(5);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.put("d", 4);
+    cache.put("e", 5);
+    System.out.println("key-a-check-1 - does cache contain key \"a\":" + cache.containsKey("a"));
+    cache.put("f", 6);
+    System.out.println("key-a-check-2 - does cache contain key \"a\":" + cache.containsKey("a"));
+
+    System.out.println("key-b-check-1 - does cache contain key \"b\":" + cache.containsKey("b"));
+    cache.get("b");
+    cache.put("g", 7);
+    System.out.println("key-b-check-2 - does cache contain key \"b\":" + cache.containsKey("b"));
+
+    System.out.println("key-c-check-1 - does cache contain key \"c\":" + cache.containsKey("c"));
+  }
+
+}
@@ -0,0 +1,13 @@
+package org.skywang.cache;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * computes the values of several keys that missed the cache in one call, e.g. one batched query
+ * to the backing store. keys without a value are simply left out of the returned map.
+ */
+public interface BulkLoader<K, V> {
+
+  Map<K, V> loadAll(Set<K> keys) throws Exception;
+}
@@ -0,0 +1,10 @@
+package org.skywang.cache;
+
+/**
+ * computes the value of a key that missed the cache, e.g. by reading it from the backing store.
+ * returning null means the key has no value, nothing is cached then.
+ */
+public interface CacheLoader<K, V> {
+
+  V load(K key) throws Exception;
+}
@@ -0,0 +1,23 @@
+package org.skywang.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * one shard of a ShardedCache, a local cache or a stand-in for a cache on a remote node.
+ * a shard is called by many threads at once, see ShardedCache.shard() for the adapters of the
+ * local caches.
+ */
+public interface CacheShard<K, V> {
+
+  V get(K key);
+
+  void put(K key, V value);
+
+  V remove(K key);
+
+  int size();
+
+  // copies of the entries, read when the entries are migrated to another shard
+  Collection<Map.Entry<K, V>> getAll();
+}
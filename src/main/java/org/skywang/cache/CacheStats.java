@@ -0,0 +1,100 @@
+package org.skywang.cache;
+
+import java.util.Arrays;
+
+/**
+ * an immutable point-in-time snapshot of the statistics of a cache, see StatsCounter
+ */
+public final class CacheStats {
+  private final long hitCount;
+  private final long missCount;
+  private final long loadSuccessCount;
+  private final long loadFailureCount;
+  private final long totalLoadTime;
+  private final long[] evictionCount;
+  private final long evictionWeight;
+  private final long weightedSize;
+
+  CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+      long totalLoadTime, long[] evictionCount, long evictionWeight, long weightedSize) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.loadSuccessCount = loadSuccessCount;
+    this.loadFailureCount = loadFailureCount;
+    this.totalLoadTime = totalLoadTime;
+    this.evictionCount = evictionCount;
+    this.evictionWeight = evictionWeight;
+    this.weightedSize = weightedSize;
+  }
+
+  public long hitCount() {
+    return hitCount;
+  }
+
+  public long missCount() {
+    return missCount;
+  }
+
+  public long requestCount() {
+    return hitCount + missCount;
+  }
+
+  // 1.0 when nothing was requested yet
+  public double hitRate() {
+    long requestCount = requestCount();
+    return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+  }
+
+  public double missRate() {
+    long requestCount = requestCount();
+    return (requestCount == 0) ? 0.0 : (double) missCount / requestCount;
+  }
+
+  public long loadSuccessCount() {
+    return loadSuccessCount;
+  }
+
+  public long loadFailureCount() {
+    return loadFailureCount;
+  }
+
+  // time spent loading in nanoseconds, successful and failed loads
+  public long totalLoadTime() {
+    return totalLoadTime;
+  }
+
+  // average time of one load in nanoseconds
+  public double averageLoadPenalty() {
+    long loadCount = loadSuccessCount + loadFailureCount;
+    return (loadCount == 0) ? 0.0 : (double) totalLoadTime / loadCount;
+  }
+
+  public long evictionCount() {
+    long count = 0;
+    for (long causeCount : evictionCount) {
+      count += causeCount;
+    }
+    return count;
+  }
+
+  public long evictionCount(EvictionCause cause) {
+    return evictionCount[cause.ordinal()];
+  }
+
+  public long evictionWeight() {
+    return evictionWeight;
+  }
+
+  // total weight of the cached entries when the snapshot was taken
+  public long weightedSize() {
+    return weightedSize;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", loadSuccessCount="
+        + loadSuccessCount + ", loadFailureCount=" + loadFailureCount + ", totalLoadTime="
+        + totalLoadTime + ", evictionCount=" + Arrays.toString(evictionCount)
+        + ", evictionWeight=" + evictionWeight + ", weightedSize=" + weightedSize + "}";
+  }
+}
@@ -0,0 +1,333 @@
+package org.skywang.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * a CLOCK cache, an approximation of LRU whose hits write nothing shared but one bit
+ * (1) entries are looked up in a ConcurrentHashMap, get() takes no lock
+ * (2) a hit only sets the reference bit of the entry, there is no list to re-link
+ * (3) the entries sit in the slots of a ring, on a miss a single hand sweeps the ring under a lock,
+ * it clears the set reference bits and evicts the first entry whose bit is clear
+ *
+ * w/ clockPro the ring also runs a simplified CLOCK-Pro, so that one-off scans do not flush the
+ * entries that are used over & over
+ * (1) the resident entries are hot or cold, a new entry starts cold and in its test period
+ * (2) a cold entry referenced again during its test period is promoted to hot, a hot entry whose
+ * reference bit is clear is demoted to cold when there are more hot entries than hot target
+ * (3) an evicted cold entry still in test stays in the ring as a non-resident test entry (key
+ * only), a miss on a test entry brings the key back as hot and grows the cold target, a test
+ * entry the hand passes w/o a miss on it shrinks the cold target
+ * the one hand does the work of the hot, cold and test hands of the original CLOCK-Pro, so the
+ * ring has room for capacity resident plus capacity test entries.
+ *
+ * hits & misses are recorded into an optional StatsCounter, and evictions are reported to an
+ * optional EvictionListener (under the lock), both are off by default.
+ */
+public class ClockCache<K, V> {
+  private final static int HOT = 0;
+  private final static int COLD = 1;
+  private final static int TEST = 2;
+
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final int capacity;
+  private final boolean clockPro;
+
+  // the ring, guarded by the evictionLock
+  private final Node<K, V>[] slots;
+  private final int[] freeSlots;
+  private int freeCount;
+  private int hand;
+  private int residentCount;
+  private int hotCount;
+  private int testCount;
+  // CLOCK-Pro: adaptive number of cold resident entries, the rest may be hot
+  private int coldTarget;
+
+  // null when the statistics or the eviction notifications are off
+  private volatile StatsCounter statsCounter;
+  private volatile EvictionListener<? super K, ? super V> evictionListener;
+
+  public ClockCache(int capacity) {
+    this(capacity, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ClockCache(int capacity, boolean clockPro) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.clockPro = clockPro;
+    this.data = new ConcurrentHashMap<K, Node<K, V>>(clockPro ? 2 * capacity : capacity);
+    this.slots = (Node<K, V>[]) new Node[clockPro ? 2 * capacity : capacity];
+    this.freeSlots = new int[slots.length];
+    reset();
+  }
+
+  public V get(K key) {
+    Node<K, V> node = data.get(key);
+    // a test entry has no value
+    V value = (node == null) ? null : node.value;
+    if (value != null && !node.referenced) {
+      // skip the write when the bit is already set, the cache line stays shared
+      node.referenced = true;
+    }
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      if (value != null) {
+        stats.recordHits(1);
+      } else {
+        stats.recordMisses(1);
+      }
+    }
+    return value;
+  }
+
+  public V put(K key, V value) {
+    if (key == null || value == null) {
+      throw new NullPointerException("key & value can not be null");
+    }
+    evictionLock.lock();
+    try {
+      Node<K, V> node = data.get(key);
+      if (node != null && node.status != TEST) {
+        V oldValue = node.value;
+        node.value = value;
+        node.referenced = true;
+        return oldValue;
+      }
+      boolean testHit = (node != null);
+      if (testHit) {
+        // evicted too early, give the cold entries more room
+        removeNode(node);
+        coldTarget = Math.min(capacity, coldTarget + 1);
+      }
+      makeRoom();
+      node = new Node<K, V>(key, value);
+      if (testHit) {
+        node.status = HOT;
+        hotCount++;
+      } else {
+        node.status = COLD;
+        node.inTest = clockPro;
+      }
+      node.slot = freeSlots[--freeCount];
+      slots[node.slot] = node;
+      data.put(key, node);
+      residentCount++;
+      return null;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public V remove(K key) {
+    evictionLock.lock();
+    try {
+      Node<K, V> node = data.get(key);
+      if (node == null) {
+        return null;
+      }
+      V value = node.value;
+      removeNode(node);
+      return value;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public boolean containsKey(K key) {
+    Node<K, V> node = data.get(key);
+    return node != null && node.value != null;
+  }
+
+  // the number of resident entries
+  public int size() {
+    evictionLock.lock();
+    try {
+      return residentCount;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public void clear() {
+    evictionLock.lock();
+    try {
+      data.clear();
+      Arrays.fill(slots, null);
+      reset();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  // start recording into the counter, null turns the statistics off
+  public void setStatsCounter(StatsCounter statsCounter) {
+    this.statsCounter = statsCounter;
+  }
+
+  // notify the listener of every eviction, null turns the notifications off
+  public void setEvictionListener(EvictionListener<? super K, ? super V> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  // point-in-time statistics, all zero but the size when no StatsCounter is set
+  public CacheStats stats() {
+    StatsCounter stats = statsCounter;
+    int size = size();
+    return (stats == null) ? new StatsCounter().snapshot(size) : stats.snapshot(size);
+  }
+
+  // the number of hot resident entries, always 0 w/o clockPro
+  int hotCount() {
+    evictionLock.lock();
+    try {
+      return hotCount;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  // the number of non-resident test entries, always 0 w/o clockPro
+  int testCount() {
+    evictionLock.lock();
+    try {
+      return testCount;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * sweeps the hand until there is room for one more resident entry in a free slot.
+   * concurrent hits may keep setting reference bits, after 3 full turns the bits are ignored so
+   * that the sweep always ends.
+   */
+  private void makeRoom() {
+    long maxSteps = 3L * slots.length;
+    for (long step = 0; residentCount >= capacity || freeCount == 0; step++) {
+      Node<K, V> node = slots[hand];
+      boolean force = step >= maxSteps;
+      if (node == null) {
+        // free slot
+      } else if (node.status == TEST) {
+        // the test period ended w/o a miss on the key
+        removeNode(node);
+        coldTarget = Math.max(1, coldTarget - 1);
+      } else if (node.referenced && !force) {
+        node.referenced = false;
+        if (node.status == COLD && clockPro) {
+          if (node.inTest) {
+            node.status = HOT;
+            node.inTest = false;
+            hotCount++;
+          } else {
+            node.inTest = true;
+          }
+        }
+      } else if (node.status == HOT) {
+        if (force || hotCount > capacity - coldTarget) {
+          node.status = COLD;
+          hotCount--;
+        }
+      } else {
+        evict(node);
+      }
+      hand = (hand + 1 == slots.length) ? 0 : hand + 1;
+    }
+  }
+
+  private void evict(Node<K, V> node) {
+    V value = node.value;
+    if (node.inTest) {
+      // keep the key as a test entry
+      node.value = null;
+      node.status = TEST;
+      node.inTest = false;
+      residentCount--;
+      testCount++;
+    } else {
+      removeNode(node);
+    }
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      stats.recordEviction(EvictionCause.SIZE, 1);
+    }
+    EvictionListener<? super K, ? super V> listener = evictionListener;
+    if (listener != null) {
+      listener.onEviction(node.key, value, EvictionCause.SIZE);
+    }
+  }
+
+  private void removeNode(Node<K, V> node) {
+    data.remove(node.key, node);
+    slots[node.slot] = null;
+    freeSlots[freeCount++] = node.slot;
+    if (node.status == TEST) {
+      testCount--;
+    } else {
+      residentCount--;
+      if (node.status == HOT) {
+        hotCount--;
+      }
+    }
+    node.value = null;
+  }
+
+  private void reset() {
+    // slot 0 is handed out first
+    freeCount = slots.length;
+    for (int i = 0; i < slots.length; i++) {
+      freeSlots[i] = slots.length - 1 - i;
+    }
+    hand = 0;
+    residentCount = 0;
+    hotCount = 0;
+    testCount = 0;
+    coldTarget = Math.max(1, capacity / 2);
+  }
+
+
+  private static final class Node<K, V> {
+    private final K key;
+    // null once the entry is not resident
+    private volatile V value;
+    // set by the hits w/o the lock, cleared by the hand
+    private volatile boolean referenced;
+    // guarded by the evictionLock
+    private int status;
+    private boolean inTest;
+    private int slot;
+
+    private Node(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  public static void main(String[] args) {
+    ClockCache<String, Integer> cache = new ClockCache<String, Integer>(5);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.put("d", 4);
+    cache.put("e", 5);
+    System.out.println("key-a-check-1 - does cache contain key \"a\":" + cache.containsKey("a"));
+    cache.put("f", 6);
+    System.out.println("key-a-check-2 - does cache contain key \"a\":" + cache.containsKey("a"));
+
+    System.out.println("key-c-check-1 - does cache contain key \"c\":" + cache.containsKey("c"));
+    cache.get("c");
+    cache.put("g", 7);
+    System.out.println("key-c-check-2 - does cache contain key \"c\":" + cache.containsKey("c"));
+    System.out.println("key-b-check - does cache contain key \"b\":" + cache.containsKey("b"));
+  }
+}
@@ -1,8 +1,20 @@
 package org.skywang.cache;
 
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -18,9 +30,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * (2) maintain a doubly linked list of entries either in AccessOrder or InsertionOrder 
  * (3) has a method removeEldestEntry() which can override to return true when cache size exceed the specified
  * capacity
+ *
+ * all the cache operations share one lock, see StripedLruCache for a lock striped variant
+ *
+ * hits, misses & evictions are recorded into an optional StatsCounter, and evictions are reported
+ * to an optional EvictionListener (under the write lock), both are off by default.
+ *
+ * snapshot() & restore() warm a restarted cache, the entries are written in LRU order to a binary
+ * file and put back in the same order, so the recency order survives the restart.
  */
 public class ConcurrentLruCache<K, V> extends LinkedHashMap<K, V> {
   private static final long serialVersionUID = 1L;
+  private final static int SNAPSHOT_MAGIC = 0x4c525553;
+  private final static int SNAPSHOT_VERSION = 1;
+  private final static int SNAPSHOT_BUFFER_SIZE = 64 * 1024;
   private int capacity;
   private final static float loadFactor = 0.75f;
   private final static int initCapacity = (int) Math.ceil((1 / loadFactor) + 1);
@@ -29,6 +52,10 @@ public class ConcurrentLruCache<K, V> extends LinkedHashMap<K, V> {
   private final Lock readLock = cacheLock.readLock();
   private final Lock writeLock = cacheLock.writeLock();
 
+  // null when the statistics or the eviction notifications are off
+  private transient volatile StatsCounter statsCounter;
+  private transient volatile EvictionListener<? super K, ? super V> evictionListener;
+
   public ConcurrentLruCache(int capacity) {
     super(initCapacity, loadFactor, true);
     this.capacity = capacity;
@@ -40,16 +67,37 @@ public class ConcurrentLruCache<K, V> extends LinkedHashMap<K, V> {
 
   @Override
   protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
-    return size() > this.capacity;
+    if (super.size() <= this.capacity) {
+      return false;
+    }
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      stats.recordEviction(EvictionCause.SIZE, 1);
+    }
+    EvictionListener<? super K, ? super V> listener = evictionListener;
+    if (listener != null) {
+      listener.onEviction(entry.getKey(), entry.getValue(), EvictionCause.SIZE);
+    }
+    return true;
   }
 
+  // get() re-links the access ordered list, so it needs the write lock as well
   @Override
   public V get(Object key) {
     try {
-      readLock.lock();
-      return super.get(key);
+      writeLock.lock();
+      V value = super.get(key);
+      StatsCounter stats = statsCounter;
+      if (stats != null) {
+        if (value != null) {
+          stats.recordHits(1);
+        } else {
+          stats.recordMisses(1);
+        }
+      }
+      return value;
     } finally {
-      readLock.unlock();
+      writeLock.unlock();
     }
   }
 
@@ -63,6 +111,16 @@ public class ConcurrentLruCache<K, V> extends LinkedHashMap<K, V> {
     }
   }
 
+  @Override
+  public V remove(Object key) {
+    try {
+      writeLock.lock();
+      return super.remove(key);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
   @Override
   public boolean containsKey(Object key) {
     try {
@@ -93,15 +151,216 @@ public class ConcurrentLruCache<K, V> extends LinkedHashMap<K, V> {
     }
   }
 
+  // looks up all the keys under one lock acquisition, the result holds only the keys found
+  public Map<K, V> getAll(Iterable<? extends K> keys) {
+    Map<K, V> result = new HashMap<K, V>();
+    int hits = 0;
+    int misses = 0;
+    try {
+      writeLock.lock();
+      for (K key : keys) {
+        V value = super.get(key);
+        if (value != null) {
+          result.put(key, value);
+          hits++;
+        } else {
+          misses++;
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      stats.recordHits(hits);
+      stats.recordMisses(misses);
+    }
+    return result;
+  }
+
+  // the entries are put in the iteration order of the map, under one lock acquisition
+  @Override
+  public void putAll(Map<? extends K, ? extends V> map) {
+    try {
+      writeLock.lock();
+      for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+        super.put(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // removes all the keys under one lock acquisition
+  public void invalidateAll(Iterable<? extends K> keys) {
+    try {
+      writeLock.lock();
+      for (K key : keys) {
+        super.remove(key);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // copies of the entries from the least to the most recently used
   public Collection<Map.Entry<K, V>> getAll() {
     try {
       readLock.lock();
-      return new ArrayList<Map.Entry<K, V>>(super.entrySet());
+      List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(super.size());
+      for (Map.Entry<K, V> entry : super.entrySet()) {
+        entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(entry));
+      }
+      return entries;
     } finally {
       readLock.unlock();
     }
   }
 
+  /**
+   * writes the entries in LRU order to the file, the lock is only held while getAll() copies the
+   * entries, serializing & writing do not block the writers.
+   * the file is written next to the target and moved over it, so a crash never leaves a torn
+   * snapshot behind, a failed write deletes the temporary file.
+   *
+   * layout: magic, version, entry count, then per entry key length, key, value length, value
+   */
+  public int snapshot(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+      throws IOException {
+    Collection<Map.Entry<K, V>> entries = getAll();
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      try {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(entries.size());
+        for (Map.Entry<K, V> entry : entries) {
+          byte[] key = keySerializer.serialize(entry.getKey());
+          byte[] value = valueSerializer.serialize(entry.getValue());
+          int length = 8 + key.length + value.length;
+          if (buffer.remaining() < length) {
+            writeFully(channel, buffer);
+          }
+          if (buffer.capacity() < length) {
+            // larger than the buffer, written on its own
+            ByteBuffer large = ByteBuffer.allocate(length);
+            large.putInt(key.length).put(key).putInt(value.length).put(value);
+            writeFully(channel, large);
+          } else {
+            buffer.putInt(key.length).put(key).putInt(value.length).put(value);
+          }
+        }
+        writeFully(channel, buffer);
+        channel.force(false);
+      } finally {
+        channel.close();
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (Throwable e) {
+      // a failed snapshot leaves no temporary file behind, the previous snapshot stays intact
+      try {
+        Files.deleteIfExists(tmp);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+    return entries.size();
+  }
+
+  /**
+   * puts the entries of a snapshot back from the least to the most recently used, they end up
+   * more recent than the entries already cached.
+   * the file is memory mapped and decoded before the write lock is taken, only the most recent
+   * capacity entries are decoded. returns the number of restored entries.
+   */
+  public int restore(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+      throws IOException {
+    List<K> keys;
+    List<V> values;
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("snapshot is too large: " + channel.size());
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+        throw new IOException("not a cache snapshot: " + file);
+      }
+      int count = buffer.getInt();
+      if (count < 0) {
+        throw new IOException("corrupt snapshot, negative entry count " + count + ": " + file);
+      }
+      // the eldest entries would be evicted by the newer ones anyway
+      int skip = Math.max(0, count - capacity);
+      keys = new ArrayList<K>(count - skip);
+      values = new ArrayList<V>(count - skip);
+      for (int i = 0; i < count; i++) {
+        byte[] key = readBytes(buffer, i < skip);
+        byte[] value = readBytes(buffer, i < skip);
+        if (i >= skip) {
+          keys.add(keySerializer.deserialize(key));
+          values.add(valueSerializer.deserialize(value));
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException("truncated snapshot: " + file, e);
+    } finally {
+      channel.close();
+    }
+
+    try {
+      writeLock.lock();
+      for (int i = 0; i < keys.size(); i++) {
+        super.put(keys.get(i), values.get(i));
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    return keys.size();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  // the next length prefixed byte array, null when only skipped
+  private static byte[] readBytes(ByteBuffer buffer, boolean skip) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    if (skip) {
+      buffer.position(buffer.position() + length);
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  // start recording into the counter, null turns the statistics off
+  public void setStatsCounter(StatsCounter statsCounter) {
+    this.statsCounter = statsCounter;
+  }
+
+  // notify the listener of every eviction, null turns the notifications off
+  public void setEvictionListener(EvictionListener<? super K, ? super V> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  // point-in-time statistics, all zero but the size when no StatsCounter is set
+  public CacheStats stats() {
+    StatsCounter stats = statsCounter;
+    int size = size();
+    return (stats == null) ? new StatsCounter().snapshot(size) : stats.snapshot(size);
+  }
+
 
   public static void main(String[] args) {
     ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>(5);
@@ -0,0 +1,11 @@
+package org.skywang.cache;
+
+/**
+ * why a cache dropped an entry on its own
+ */
+public enum EvictionCause {
+  // the capacity or the maximum weight was exceeded
+  SIZE,
+  // the entry expired
+  EXPIRED
+}
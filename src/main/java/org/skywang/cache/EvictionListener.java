@@ -0,0 +1,11 @@
+package org.skywang.cache;
+
+/**
+ * notified when a cache evicts an entry. the callback runs on the thread that triggered the
+ * eviction, while the cache may still hold its lock, so it should be quick and must not call back
+ * into the cache.
+ */
+public interface EvictionListener<K, V> {
+
+  void onEviction(K key, V value, EvictionCause cause);
+}
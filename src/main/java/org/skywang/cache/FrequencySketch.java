@@ -0,0 +1,95 @@
+package org.skywang.cache;
+
+/**
+ * a count-min sketch w/i 4-bit counters that estimates how often a key was accessed
+ * (1) a long word packs 16 counters, a key maps to 4 counters chosen by 4 different hashes
+ * (2) the estimated frequency is the minimum of the 4 counters, counters saturate at 15
+ * (3) aging: after sampleSize increments every counter is halved, so old popularity fades away
+ *
+ * the sketch is not thread safe, the owner cache serializes the access to it
+ */
+final class FrequencySketch<E> {
+  // seeds of the 4 hash functions
+  private final static long[] SEED = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private final static long RESET_MASK = 0x7777777777777777L;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  FrequencySketch(int expectedSize) {
+    int length = 1;
+    while (length < Math.max(expectedSize, 1)) {
+      length <<= 1;
+    }
+    this.table = new long[length];
+    this.tableMask = length - 1;
+    this.sampleSize = 10 * Math.max(expectedSize, 1);
+  }
+
+  // estimated number of accesses of the element, between 0 and 15
+  int frequency(E e) {
+    int hash = spread(e.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  // record one access of the element, the sketch ages itself once the sample is complete
+  void increment(E e) {
+    int hash = spread(e.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  void clear() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = 0L;
+    }
+    size = 0;
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  // halve every counter at once, a counter of a long word is shifted into its neighbor's bits
+  // and masked off again
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = size / 2;
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEED[i]) * SEED[i];
+    h += (h >>> 32);
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -0,0 +1,404 @@
+package org.skywang.cache;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a cache-aside loading cache w/ request coalescing (single-flight) in front of a StripedLruCache
+ * (1) get(key, loader) returns the cached value, or loads it on a miss
+ * (2) concurrent misses on the same key run one load, the other callers wait for the same
+ * in-flight result instead of hitting the backing store again
+ * (3) getAll(keys, bulkLoader) loads all the missing keys that nobody else is loading w/ one
+ * bulkLoader call, and waits for the keys that are already in flight
+ *
+ * a failed load is not cached, every caller waiting for it gets the failure wrapped in an
+ * ExecutionException and the next get() tries again.
+ *
+ * w/ refreshAfterWrite, a get() that finds an entry older than the threshold returns the current
+ * value at once and reloads the entry in the background on the refresh executor (virtual threads
+ * when the JVM has them). a failed or empty reload keeps the old value. getAll() does not refresh.
+ *
+ * hits, misses, loads & load time are recorded into an optional StatsCounter.
+ */
+public class LoadingCache<K, V> {
+  private final StripedLruCache<K, Stamped<V>> cache;
+  // loads & refreshes in progress, a key is removed once its value is in the cache
+  private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<K, Flight<V>>();
+  // 0 means the entries are never refreshed
+  private final long refreshAfterWriteNanos;
+  private final Executor refreshExecutor;
+  private final Ticker ticker;
+  // null when the statistics are off
+  private volatile StatsCounter statsCounter;
+
+  public LoadingCache(int capacity) {
+    this(capacity, 0, TimeUnit.NANOSECONDS, null, Ticker.SYSTEM);
+  }
+
+  public LoadingCache(int capacity, long refreshAfterWrite, TimeUnit unit) {
+    this(capacity, refreshAfterWrite, unit, null, Ticker.SYSTEM);
+  }
+
+  public LoadingCache(int capacity, long refreshAfterWrite, TimeUnit unit,
+      Executor refreshExecutor) {
+    this(capacity, refreshAfterWrite, unit, refreshExecutor, Ticker.SYSTEM);
+  }
+
+  // refreshExecutor null means the shared default executor
+  public LoadingCache(int capacity, long refreshAfterWrite, TimeUnit unit,
+      Executor refreshExecutor, Ticker ticker) {
+    if (refreshAfterWrite < 0) {
+      throw new IllegalArgumentException("refresh duration can not be negative");
+    }
+    this.cache = new StripedLruCache<K, Stamped<V>>(capacity);
+    this.refreshAfterWriteNanos = unit.toNanos(refreshAfterWrite);
+    this.refreshExecutor = refreshExecutor;
+    this.ticker = ticker;
+  }
+
+  // the cached value, or the value loaded by the loader. null if the loader has no value
+  public V get(K key, CacheLoader<? super K, ? extends V> loader) throws ExecutionException {
+    Stamped<V> stamped = cache.get(key);
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      if (stamped != null) {
+        stats.recordHits(1);
+      } else {
+        stats.recordMisses(1);
+      }
+    }
+    if (stamped != null) {
+      if (refreshAfterWriteNanos > 0
+          && ticker.read() - stamped.writeTime >= refreshAfterWriteNanos) {
+        refresh(key, stamped, loader);
+      }
+      return stamped.value;
+    }
+    Flight<V> flight = new Flight<V>();
+    Flight<V> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      return existing.await();
+    }
+    try {
+      // loaded & published by another flight between the miss and putIfAbsent
+      V value = getIfPresent(key);
+      if (value == null) {
+        value = load(key, loader);
+        if (value != null) {
+          put(key, value);
+        }
+      }
+      flight.complete(value);
+    } catch (Throwable e) {
+      flight.fail(e);
+    } finally {
+      inFlight.remove(key, flight);
+    }
+    return flight.await();
+  }
+
+  // the values of the keys that are cached or could be loaded, in the iteration order of keys
+  public Map<K, V> getAll(Iterable<? extends K> keys, BulkLoader<K, ? extends V> bulkLoader)
+      throws ExecutionException {
+    Map<K, V> result = new LinkedHashMap<K, V>();
+    Map<K, Flight<V>> waiting = new LinkedHashMap<K, Flight<V>>();
+    Map<K, Flight<V>> owned = new LinkedHashMap<K, Flight<V>>();
+    List<K> order = new ArrayList<K>();
+    for (K key : keys) {
+      order.add(key);
+      if (result.containsKey(key) || waiting.containsKey(key) || owned.containsKey(key)) {
+        continue;
+      }
+      V value = getIfPresent(key);
+      if (value != null) {
+        result.put(key, value);
+        continue;
+      }
+      Flight<V> flight = new Flight<V>();
+      Flight<V> existing = inFlight.putIfAbsent(key, flight);
+      if (existing != null) {
+        waiting.put(key, existing);
+      } else {
+        owned.put(key, flight);
+      }
+    }
+
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      // only the cached values are in the result so far
+      stats.recordHits(result.size());
+      stats.recordMisses(owned.size() + waiting.size());
+    }
+    if (!owned.isEmpty()) {
+      loadAll(owned, bulkLoader);
+    }
+    ExecutionException failure = awaitAll(owned, result, null);
+    failure = awaitAll(waiting, result, failure);
+    if (failure != null) {
+      throw failure;
+    }
+
+    Map<K, V> ordered = new LinkedHashMap<K, V>();
+    for (K key : order) {
+      V value = result.get(key);
+      if (value != null) {
+        ordered.put(key, value);
+      }
+    }
+    return ordered;
+  }
+
+  public V getIfPresent(K key) {
+    Stamped<V> stamped = cache.get(key);
+    return (stamped == null) ? null : stamped.value;
+  }
+
+  public void put(K key, V value) {
+    cache.put(key, new Stamped<V>(value, ticker.read()));
+  }
+
+  public void invalidate(K key) {
+    cache.remove(key);
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  // start recording into the counter, null turns the statistics off
+  public void setStatsCounter(StatsCounter statsCounter) {
+    this.statsCounter = statsCounter;
+  }
+
+  // point-in-time statistics, all zero but the size when no StatsCounter is set
+  public CacheStats stats() {
+    StatsCounter stats = statsCounter;
+    int size = size();
+    return (stats == null) ? new StatsCounter().snapshot(size) : stats.snapshot(size);
+  }
+
+  // call the loader, timing it when the statistics are on
+  private V load(K key, CacheLoader<? super K, ? extends V> loader) throws Exception {
+    StatsCounter stats = statsCounter;
+    if (stats == null) {
+      return loader.load(key);
+    }
+    long start = ticker.read();
+    boolean success = false;
+    try {
+      V value = loader.load(key);
+      success = true;
+      return value;
+    } finally {
+      recordLoad(stats, success, ticker.read() - start);
+    }
+  }
+
+  private static void recordLoad(StatsCounter stats, boolean success, long loadTime) {
+    if (success) {
+      stats.recordLoadSuccess(loadTime);
+    } else {
+      stats.recordLoadFailure(loadTime);
+    }
+  }
+
+  // reload the entry in the background unless a load of the key is already in flight. the new
+  // value replaces the entry only if nobody wrote the key in between
+  private void refresh(final K key, final Stamped<V> stamped,
+      final CacheLoader<? super K, ? extends V> loader) {
+    final Flight<V> flight = new Flight<V>();
+    if (inFlight.putIfAbsent(key, flight) != null) {
+      return;
+    }
+    Runnable reload = new Runnable() {
+      @Override
+      public void run() {
+        V value = stamped.value;
+        try {
+          V reloaded = load(key, loader);
+          if (reloaded != null) {
+            Stamped<V> refreshed = new Stamped<V>(reloaded, ticker.read());
+            if (cache.replace(key, stamped, refreshed)) {
+              value = reloaded;
+            }
+          }
+        } catch (Throwable e) {
+          // keep serving the old value, the next read past the threshold tries again
+        } finally {
+          flight.complete(value);
+          inFlight.remove(key, flight);
+        }
+      }
+    };
+    try {
+      (refreshExecutor == null ? DefaultRefreshExecutor.INSTANCE : refreshExecutor).execute(reload);
+    } catch (RejectedExecutionException e) {
+      flight.complete(stamped.value);
+      inFlight.remove(key, flight);
+    }
+  }
+
+  // run one bulk load for the keys owned by this caller, then complete & release their flights
+  private void loadAll(Map<K, Flight<V>> owned, BulkLoader<K, ? extends V> bulkLoader) {
+    Set<K> missing = new LinkedHashSet<K>();
+    for (Map.Entry<K, Flight<V>> entry : owned.entrySet()) {
+      // loaded & published by another flight between the miss and putIfAbsent
+      V value = getIfPresent(entry.getKey());
+      if (value != null) {
+        entry.getValue().complete(value);
+      } else {
+        missing.add(entry.getKey());
+      }
+    }
+    try {
+      if (!missing.isEmpty()) {
+        StatsCounter stats = statsCounter;
+        long start = ticker.read();
+        boolean success = false;
+        Map<K, ? extends V> loaded;
+        try {
+          loaded = bulkLoader.loadAll(missing);
+          success = true;
+        } finally {
+          if (stats != null) {
+            recordLoad(stats, success, ticker.read() - start);
+          }
+        }
+        for (K key : missing) {
+          V value = (loaded == null) ? null : loaded.get(key);
+          if (value != null) {
+            put(key, value);
+          }
+          owned.get(key).complete(value);
+        }
+      }
+    } catch (Throwable e) {
+      for (K key : missing) {
+        owned.get(key).fail(e);
+      }
+    } finally {
+      for (Map.Entry<K, Flight<V>> entry : owned.entrySet()) {
+        inFlight.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  // wait for every flight, collect the values and return the first failure
+  private ExecutionException awaitAll(Map<K, Flight<V>> flights, Map<K, V> result,
+      ExecutionException failure) {
+    for (Map.Entry<K, Flight<V>> entry : flights.entrySet()) {
+      try {
+        V value = entry.getValue().await();
+        if (value != null) {
+          result.put(entry.getKey(), value);
+        }
+      } catch (ExecutionException e) {
+        failure = (failure == null) ? e : failure;
+      }
+    }
+    return failure;
+  }
+
+  // a cached value and the time it was written
+  private static final class Stamped<V> {
+    private final V value;
+    private final long writeTime;
+
+    Stamped(V value, long writeTime) {
+      this.value = value;
+      this.writeTime = writeTime;
+    }
+  }
+
+  // lazily created executor shared by the caches w/o their own refresh executor, one virtual
+  // thread per refresh when the JVM supports it, otherwise a cached pool of daemon threads
+  private static final class DefaultRefreshExecutor {
+    private static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      try {
+        Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) factory.invoke(null);
+      } catch (Exception e) {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "loading-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
+    }
+  }
+
+  // the result of one in-flight load, completed once by the loading thread
+  private static final class Flight<V> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private V value;
+    private Throwable failure;
+
+    void complete(V value) {
+      if (done.getCount() > 0) {
+        this.value = value;
+        done.countDown();
+      }
+    }
+
+    void fail(Throwable failure) {
+      if (done.getCount() > 0) {
+        this.failure = failure;
+        done.countDown();
+      }
+    }
+
+    // wait for the load w/o giving up on an interrupt, the interrupt status is restored
+    V await() throws ExecutionException {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (failure != null) {
+        throw new ExecutionException(failure);
+      }
+      return value;
+    }
+  }
+
+
+  public static void main(String[] args) throws Exception {
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(100);
+    CacheLoader<String, Integer> loader = new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) throws Exception {
+        System.out.println("loading key \"" + key + "\" from the backing store");
+        return key.length();
+      }
+    };
+    System.out.println("first get: " + cache.get("hello", loader));
+    System.out.println("second get: " + cache.get("hello", loader));
+  }
+
+}
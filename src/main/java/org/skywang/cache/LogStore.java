@@ -0,0 +1,322 @@
+package org.skywang.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * a key value store in an append-only log file, the disk tier of TwoTierCache
+ * (1) put() appends a record (key length, value length, key, value) to the end of the log, an
+ * update or a remove only drops the old record from the index, the bytes stay until compaction
+ * (2) the index keeps the offset & size of the live record of every key in memory, get() is one
+ * positional read of the value
+ * (3) once half of the log is dead records, a background thread copies the live records into a
+ * new log file and swaps the index over, reads & appends continue meanwhile
+ * (4) the live records are bounded by maxBytes, the first written key is dropped first (FIFO)
+ *
+ * the log is a cache, it is truncated on open and deleted on close, nothing is recovered.
+ * every operation is synchronized on the store, compaction only takes the lock to snapshot the
+ * index and to swap the files.
+ */
+class LogStore<K, V> implements Closeable {
+  private final static int HEADER_SIZE = 8;
+  // a smaller log is never compacted
+  private final static long MIN_COMPACTION_SIZE = 1 << 20;
+
+  private final Path directory;
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+  private final long maxBytes;
+  private final ExecutorService compactor;
+
+  // key -> location of its record, in the order the keys were written
+  private LinkedHashMap<K, Record> index = new LinkedHashMap<K, Record>();
+  private FileChannel channel;
+  private Path file;
+  private int generation;
+  private long writePosition;
+  private long liveBytes;
+  private boolean compacting;
+  private boolean closed;
+
+  LogStore(Path directory, long maxBytes, Serializer<K> keySerializer,
+      Serializer<V> valueSerializer) throws IOException {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    if (keySerializer == null || valueSerializer == null) {
+      throw new NullPointerException();
+    }
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+    this.file = logFile(generation);
+    this.channel = open(file);
+    this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "LogStore-compactor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  synchronized V get(K key) throws IOException {
+    Record record = index.get(key);
+    if (record == null) {
+      return null;
+    }
+    byte[] value = new byte[record.size - HEADER_SIZE - record.keyLength];
+    readFully(channel, ByteBuffer.wrap(value), record.offset + HEADER_SIZE + record.keyLength);
+    return valueSerializer.deserialize(value);
+  }
+
+  synchronized void put(K key, V value) throws IOException {
+    ensureOpen();
+    byte[] keyBytes = keySerializer.serialize(key);
+    byte[] valueBytes = valueSerializer.serialize(value);
+    ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueBytes.length);
+    bytes.putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+    bytes.flip();
+    Record record = new Record(writePosition, bytes.capacity(), keyBytes.length);
+    writeFully(channel, bytes, record.offset);
+    writePosition += record.size;
+
+    removeRecord(key);
+    index.put(key, record);
+    liveBytes += record.size;
+    // the first written keys leave first
+    Iterator<Record> eldest = index.values().iterator();
+    while (liveBytes > maxBytes && eldest.hasNext()) {
+      liveBytes -= eldest.next().size;
+      eldest.remove();
+    }
+    maybeCompact();
+  }
+
+  synchronized boolean remove(K key) {
+    boolean removed = removeRecord(key);
+    if (removed) {
+      maybeCompact();
+    }
+    return removed;
+  }
+
+  synchronized boolean containsKey(K key) {
+    return index.containsKey(key);
+  }
+
+  synchronized int size() {
+    return index.size();
+  }
+
+  // bytes of the live records
+  synchronized long liveBytes() {
+    return liveBytes;
+  }
+
+  // bytes of the log file, live & dead records
+  synchronized long fileBytes() {
+    return writePosition;
+  }
+
+  synchronized void clear() {
+    index.clear();
+    liveBytes = 0;
+    maybeCompact();
+  }
+
+  /**
+   * copies the live records into a new log file, runs on the caller thread. the records live at
+   * the start are copied w/o the lock, the ones appended meanwhile are copied under the lock
+   * right before the swap.
+   */
+  void compact() throws IOException {
+    synchronized (this) {
+      if (compacting) {
+        return;
+      }
+      compacting = true;
+    }
+    try {
+      copyLiveRecords();
+    } finally {
+      synchronized (this) {
+        compacting = false;
+      }
+    }
+  }
+
+  private void copyLiveRecords() throws IOException {
+    Record[] live;
+    long end;
+    FileChannel source;
+    Path target;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      live = index.values().toArray(new Record[index.size()]);
+      end = writePosition;
+      source = channel;
+      target = logFile(generation + 1);
+    }
+
+    FileChannel copy = open(target);
+    try {
+      // old offset -> new offset
+      Map<Long, Long> moved = new HashMap<Long, Long>(live.length * 2);
+      long position = 0;
+      for (Record record : live) {
+        moved.put(record.offset, position);
+        copyRecord(source, record, copy, position);
+        position += record.size;
+      }
+
+      synchronized (this) {
+        if (closed) {
+          copy.close();
+          Files.deleteIfExists(target);
+          return;
+        }
+        LinkedHashMap<K, Record> compacted = new LinkedHashMap<K, Record>(index.size() * 2);
+        for (Map.Entry<K, Record> entry : index.entrySet()) {
+          Record record = entry.getValue();
+          Long offset = (record.offset < end) ? moved.get(record.offset) : null;
+          if (offset == null) {
+            // appended during the copy
+            offset = position;
+            copyRecord(channel, record, copy, position);
+            position += record.size;
+          }
+          compacted.put(entry.getKey(), new Record(offset, record.size, record.keyLength));
+        }
+        channel.close();
+        Files.deleteIfExists(file);
+        channel = copy;
+        file = target;
+        generation++;
+        index = compacted;
+        writePosition = position;
+      }
+    } catch (IOException e) {
+      copy.close();
+      Files.deleteIfExists(target);
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    compactor.shutdown();
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      index.clear();
+      liveBytes = 0;
+      channel.close();
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private boolean removeRecord(K key) {
+    Record record = index.remove(key);
+    if (record == null) {
+      return false;
+    }
+    liveBytes -= record.size;
+    return true;
+  }
+
+  // schedules a background compaction once half of the log is dead records
+  private void maybeCompact() {
+    if (compacting || closed || writePosition < MIN_COMPACTION_SIZE
+        || liveBytes * 2 > writePosition) {
+      return;
+    }
+    compacting = true;
+    compactor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          copyLiveRecords();
+        } catch (IOException e) {
+          // the old log stays in use, a later write schedules another attempt
+        } finally {
+          synchronized (LogStore.this) {
+            compacting = false;
+          }
+        }
+      }
+    });
+  }
+
+  private static void copyRecord(FileChannel source, Record record, FileChannel target,
+      long position) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate(record.size);
+    readFully(source, bytes, record.offset);
+    bytes.flip();
+    writeFully(target, bytes, position);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("unexpected end of the log at " + position);
+      }
+      position += read;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("the log is closed");
+    }
+  }
+
+  private Path logFile(int generation) {
+    return directory.resolve("cache-" + generation + ".log");
+  }
+
+  private static FileChannel open(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  // where a record is in the log
+  private static final class Record {
+    final long offset;
+    final int size;
+    final int keyLength;
+
+    Record(long offset, int size, int keyLength) {
+      this.offset = offset;
+      this.size = size;
+      this.keyLength = keyLength;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package org.skywang.cache;
+
+import java.util.Arrays;
+
+/**
+ * a LRU cache specialized for primitive long keys and values
+ * (1) the entries are parallel arrays, long[] keys & values, int[] prev & next of the LRU list
+ * (2) keys are looked up in an open addressing (linear probing) int[] index of slot numbers
+ * (3) get() and put() allocate nothing, no boxing, no map node and no entry object
+ *
+ * an entry costs 8 + 8 + 4 + 4 bytes plus ~8 bytes of index, compared w/ a boxed key, a boxed
+ * value, a ConcurrentHashMap node and a CacheEntry in LruCacheWheel<Long, Long>.
+ * the cache is not thread safe.
+ */
+public class LongLongLruCache {
+  private final static int NIL = -1;
+
+  private final long[] keys;
+  private final long[] values;
+  private final int[] prev;
+  private final int[] next;
+  private final int capacity;
+
+  // slot number + 1 per bucket, 0 is an empty bucket
+  private final int[] index;
+  private final int indexMask;
+
+  private int head = NIL;
+  private int tail = NIL;
+  // released slots are chained through next[]
+  private int freeSlot = NIL;
+  private int allocatedSlots;
+  private int size;
+
+  public LongLongLruCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.keys = new long[capacity];
+    this.values = new long[capacity];
+    this.prev = new int[capacity];
+    this.next = new int[capacity];
+
+    int length = 2;
+    while (length < 2L * capacity) {
+      length <<= 1;
+    }
+    this.index = new int[length];
+    this.indexMask = length - 1;
+  }
+
+  // the value of the key, or defaultValue when the key is not cached
+  public long get(long key, long defaultValue) {
+    int slot = index[findBucket(key)] - 1;
+    if (slot < 0) {
+      return defaultValue;
+    }
+    moveToHead(slot);
+    return values[slot];
+  }
+
+  public void put(long key, long value) {
+    int bucket = findBucket(key);
+    if (index[bucket] != 0) {
+      int slot = index[bucket] - 1;
+      values[slot] = value;
+      moveToHead(slot);
+      return;
+    }
+
+    if (size == capacity) {
+      removeSlot(tail);
+      // the backward shift of the eviction may have moved the empty bucket
+      bucket = findBucket(key);
+    }
+    int slot = allocateSlot();
+    keys[slot] = key;
+    values[slot] = value;
+    index[bucket] = slot + 1;
+    linkAtHead(slot);
+    size++;
+  }
+
+  public boolean remove(long key) {
+    int bucket = findBucket(key);
+    if (index[bucket] == 0) {
+      return false;
+    }
+    removeSlot(index[bucket] - 1);
+    return true;
+  }
+
+  public boolean containsKey(long key) {
+    return index[findBucket(key)] != 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public void clear() {
+    Arrays.fill(index, 0);
+    head = NIL;
+    tail = NIL;
+    freeSlot = NIL;
+    allocatedSlots = 0;
+    size = 0;
+  }
+
+  // the bucket holding the key, or the empty bucket where the key would be inserted
+  private int findBucket(long key) {
+    int bucket = hash(key) & indexMask;
+    while (index[bucket] != 0 && keys[index[bucket] - 1] != key) {
+      bucket = (bucket + 1) & indexMask;
+    }
+    return bucket;
+  }
+
+  private void removeSlot(int slot) {
+    int bucket = hash(keys[slot]) & indexMask;
+    while (index[bucket] != slot + 1) {
+      bucket = (bucket + 1) & indexMask;
+    }
+    deleteBucket(bucket);
+    unlink(slot);
+    next[slot] = freeSlot;
+    freeSlot = slot;
+    size--;
+  }
+
+  // backward shift deletion, keeps every probe sequence w/o holes and w/o tombstones
+  private void deleteBucket(int bucket) {
+    int hole = bucket;
+    int probe = (hole + 1) & indexMask;
+    while (index[probe] != 0) {
+      int home = hash(keys[index[probe] - 1]) & indexMask;
+      // move the entry back if its home is not in the cyclic range (hole, probe]
+      if (((probe - home) & indexMask) >= ((probe - hole) & indexMask)) {
+        index[hole] = index[probe];
+        hole = probe;
+      }
+      probe = (probe + 1) & indexMask;
+    }
+    index[hole] = 0;
+  }
+
+  private int allocateSlot() {
+    if (freeSlot != NIL) {
+      int slot = freeSlot;
+      freeSlot = next[slot];
+      return slot;
+    }
+    return allocatedSlots++;
+  }
+
+  private void moveToHead(int slot) {
+    if (slot == head) {
+      return;
+    }
+    unlink(slot);
+    linkAtHead(slot);
+  }
+
+  private void linkAtHead(int slot) {
+    prev[slot] = NIL;
+    next[slot] = head;
+    if (head != NIL) {
+      prev[head] = slot;
+    } else {
+      tail = slot;
+    }
+    head = slot;
+  }
+
+  private void unlink(int slot) {
+    if (prev[slot] != NIL) {
+      next[prev[slot]] = next[slot];
+    } else {
+      head = next[slot];
+    }
+    if (next[slot] != NIL) {
+      prev[next[slot]] = prev[slot];
+    } else {
+      tail = prev[slot];
+    }
+  }
+
+  // murmur3 64-bit finalizer folded to an int
+  private static int hash(long key) {
+    key ^= (key >>> 33);
+    key *= 0xff51afd7ed558ccdL;
+    key ^= (key >>> 33);
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= (key >>> 33);
+    return (int) key;
+  }
+
+
+  public static void main(String[] args) {
+    LongLongLruCache cache = new LongLongLruCache(5);
+    for (long id = 1; id <= 5; id++) {
+      cache.put(id, id * 100);
+    }
+    System.out.println("id-1-check-1 - does cache contain id 1:" + cache.containsKey(1));
+    cache.put(6, 600);
+    System.out.println("id-1-check-2 - does cache contain id 1:" + cache.containsKey(1));
+
+    cache.get(2, -1);
+    cache.put(7, 700);
+    System.out.println("id-2-check - does cache contain id 2:" + cache.containsKey(2));
+    System.out.println("id-3-check - does cache contain id 3:" + cache.containsKey(3));
+  }
+
+}
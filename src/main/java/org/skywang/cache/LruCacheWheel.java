@@ -1,21 +1,156 @@
 package org.skywang.cache;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * reinvent the wheel, implement the lru cache w/i doublylinkedlist
  * doubly-linked-list data structure as below,
  * null <-- Head <--> node(1) <--> node(2) <--> node(3) <--> node(4) <--> Tail --> null
+ *
+ * entries can optionally expire a fixed duration after they were written (expireAfterWrite)
+ * and/or last read or written (expireAfterAccess). expiration is enforced by a hierarchical
+ * TimerWheel that advances on every cache operation, so expired entries are dropped in O(1)
+ * amortized time between capacity evictions.
+ *
+ * the cache is bounded either by the number of entries (capacity) or by the total weight of the
+ * entries computed by a Weigher, e.g. their size in bytes. a capacity bound is a weight bound in
+ * which every entry weighs 1. the weight of every entry is kept so that an update adjusts the
+ * total incrementally, then entries are evicted from the tail until the total fits the maximum.
+ *
+ * hits, misses & evictions are recorded into an optional StatsCounter, and evictions are reported
+ * to an optional EvictionListener, both are off by default.
+ *
+ * the cache is not thread safe unless it is created w/ concurrent = true, in the concurrent mode
+ * (1) the ConcurrentHashMap index is updated lock free, a put() maps a new CacheEntry and a
+ * remove() unmaps the old one
+ * (2) the recency list, the total weight and the timer wheel are only touched by the thread that
+ * holds the eviction lock, hits are recorded into a lossy ReadBuffer, writes queue a task into a
+ * write buffer
+ * (3) callers only tryLock() to drain both buffers, a caller that finds the lock taken leaves its
+ * work to the lock holder and never blocks
+ * the cache may hold more than its maximum weight until the next drain, and the recency order
+ * misses the hits dropped by a full ReadBuffer. weightedSize(), getAll() and cleanUp() wait for
+ * the lock to return an exact answer.
  */
 public class LruCacheWheel<K, V> {
   private CacheEntry<K, V> head;
   private CacheEntry<K, V> tail;
-  private int capacity;
-  private ConcurrentHashMap<K, CacheEntry<K, V>> cache =
-      new ConcurrentHashMap<K, CacheEntry<K, V>>(capacity);
+  private ConcurrentHashMap<K, CacheEntry<K, V>> cache;
+
+  // maximum & current total weight of the entries
+  private final long maxWeight;
+  private long totalWeight;
+  private final Weigher<? super K, ? super V> weigher;
+
+  // expiration in nanoseconds, 0 means the entries never expire that way
+  private final long expireAfterWriteNanos;
+  private final long expireAfterAccessNanos;
+  private final Ticker ticker;
+  // null when no expiration is configured
+  private final TimerWheel<CacheEntry<K, V>> timerWheel;
+
+  // null when the statistics or the eviction notifications are off
+  private volatile StatsCounter statsCounter;
+  private volatile EvictionListener<? super K, ? super V> evictionListener;
+
+  // concurrent mode only, null otherwise
+  private final ReentrantLock evictionLock;
+  private final ReadBuffer<CacheEntry<K, V>> readBuffer;
+  private final ConcurrentLinkedQueue<Runnable> writeBuffer;
+  private final ReadBuffer.Consumer<CacheEntry<K, V>> accessReplayer =
+      new ReadBuffer.Consumer<CacheEntry<K, V>>() {
+        @Override
+        public void accept(CacheEntry<K, V> entry) {
+          // skip the entries removed or not linked yet
+          if (entry.prev != null) {
+            removeCacheEntry(entry);
+            addCacheEntryAfterHead(entry);
+            if (expireAfterAccessNanos > 0) {
+              scheduleExpiration(entry);
+            }
+          }
+        }
+      };
+  // time of the last advance of the timer wheel
+  private long wheelTime;
 
   public LruCacheWheel(int capacity) {
-    this.capacity = capacity;
+    this(capacity, 0, 0, TimeUnit.NANOSECONDS);
+  }
+
+  public LruCacheWheel(int capacity, boolean concurrent) {
+    this(capacity, LruCacheWheel.<K, V>singletonWeigher(), 0, 0, TimeUnit.NANOSECONDS,
+        Ticker.SYSTEM, concurrent);
+  }
+
+  public LruCacheWheel(int capacity, long expireAfterWrite, long expireAfterAccess, TimeUnit unit) {
+    this(capacity, expireAfterWrite, expireAfterAccess, unit, Ticker.SYSTEM);
+  }
+
+  public LruCacheWheel(int capacity, long expireAfterWrite, long expireAfterAccess, TimeUnit unit,
+      Ticker ticker) {
+    this(capacity, LruCacheWheel.<K, V>singletonWeigher(), expireAfterWrite, expireAfterAccess,
+        unit, ticker);
+  }
+
+  public LruCacheWheel(long maxWeight, Weigher<? super K, ? super V> weigher) {
+    this(maxWeight, weigher, 0, 0, TimeUnit.NANOSECONDS, Ticker.SYSTEM);
+  }
+
+  public LruCacheWheel(long maxWeight, Weigher<? super K, ? super V> weigher,
+      long expireAfterWrite, long expireAfterAccess, TimeUnit unit, Ticker ticker) {
+    this(maxWeight, weigher, expireAfterWrite, expireAfterAccess, unit, ticker, false);
+  }
+
+  public LruCacheWheel(long maxWeight, Weigher<? super K, ? super V> weigher,
+      long expireAfterWrite, long expireAfterAccess, TimeUnit unit, Ticker ticker,
+      boolean concurrent) {
+    if (maxWeight < 0) {
+      throw new IllegalArgumentException("maximum weight can not be negative: " + maxWeight);
+    }
+    if (expireAfterWrite < 0 || expireAfterAccess < 0) {
+      throw new IllegalArgumentException("expiration duration can not be negative");
+    }
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.cache = new ConcurrentHashMap<K, CacheEntry<K, V>>((int) Math.min(maxWeight, 1 << 16) + 1);
+    this.expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+    this.expireAfterAccessNanos = unit.toNanos(expireAfterAccess);
+    this.ticker = ticker;
+    if (expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0) {
+      this.wheelTime = ticker.read();
+      this.timerWheel = new TimerWheel<CacheEntry<K, V>>(wheelTime,
+          new TimerWheel.Expirer<CacheEntry<K, V>>() {
+            @Override
+            public void expire(CacheEntry<K, V> entry) {
+              if (hasExpired(entry, wheelTime)) {
+                evictEntry(entry, EvictionCause.EXPIRED);
+              } else {
+                // read in the concurrent mode after it was scheduled, the hit was not replayed
+                scheduleExpiration(entry);
+              }
+            }
+          });
+    } else {
+      this.timerWheel = null;
+    }
+    if (concurrent) {
+      this.evictionLock = new ReentrantLock();
+      this.readBuffer = new ReadBuffer<CacheEntry<K, V>>();
+      this.writeBuffer = new ConcurrentLinkedQueue<Runnable>();
+    } else {
+      this.evictionLock = null;
+      this.readBuffer = null;
+      this.writeBuffer = null;
+    }
     head = new CacheEntry<K, V>(null, null);
     tail = new CacheEntry<K, V>(null, null);
     head.next = tail;
@@ -23,10 +158,31 @@ public class LruCacheWheel<K, V> {
   }
 
   public V get(K key) {
+    if (evictionLock != null) {
+      return getConcurrently(key);
+    }
+    long now = advanceTimerWheel();
     CacheEntry<K, V> entry = cache.get(key);
     if (entry == null) {
+      if (statsCounter != null) {
+        statsCounter.recordMisses(1);
+      }
       return null;
     }
+    if (hasExpired(entry, now)) {
+      evictEntry(entry, EvictionCause.EXPIRED);
+      if (statsCounter != null) {
+        statsCounter.recordMisses(1);
+      }
+      return null;
+    }
+    if (statsCounter != null) {
+      statsCounter.recordHits(1);
+    }
+    if (expireAfterAccessNanos > 0) {
+      entry.accessTime = now;
+      scheduleExpiration(entry);
+    }
 
     if (cache.size() == 1) {
       return entry.value;
@@ -38,28 +194,319 @@ public class LruCacheWheel<K, V> {
   }
 
   public void put(K key, V value) {
-    if (capacity == 0) {
+    if (maxWeight == 0) {
+      return;
+    }
+    int weight = weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("weight can not be negative: " + weight);
+    }
+    if (evictionLock != null) {
+      putConcurrently(key, value, weight);
       return;
     }
 
+    long now = advanceTimerWheel();
     CacheEntry<K, V> entry = cache.get(key);
     if (entry != null) {
       removeCacheEntry(entry);
       addCacheEntryAfterHead(entry);
       entry.value = value;
+      totalWeight += weight - entry.weight;
+      entry.weight = weight;
     } else {
       entry = new CacheEntry<K, V>(key, value);
+      entry.weight = weight;
       cache.put(key, entry);
       addCacheEntryAfterHead(entry);
-      if (cache.size() > capacity) {
-        cache.remove(tail.prev.key);
-        removeCacheEntry(tail.prev);
-      }
+      totalWeight += weight;
+    }
+    entry.writeTime = now;
+    entry.accessTime = now;
+    scheduleExpiration(entry);
+    evict();
+  }
+
+  public V remove(K key) {
+    if (evictionLock != null) {
+      return removeConcurrently(key);
     }
+    advanceTimerWheel();
+    CacheEntry<K, V> entry = cache.get(key);
+    if (entry == null) {
+      return null;
+    }
+    removeEntry(entry);
+    return entry.value;
   }
 
   public boolean containsKey(K key) {
-    return cache.containsKey(key);
+    long now = (evictionLock != null) ? readTicker() : advanceTimerWheel();
+    CacheEntry<K, V> entry = cache.get(key);
+    return entry != null && !hasExpired(entry, now);
+  }
+
+  // may be over the capacity & count expired entries in the concurrent mode until the next drain
+  public int size() {
+    if (evictionLock != null) {
+      tryToDrainBuffers();
+    } else {
+      advanceTimerWheel();
+    }
+    return cache.size();
+  }
+
+  // total weight of the entries, the number of entries when the cache is bounded by capacity
+  public long weightedSize() {
+    if (evictionLock != null) {
+      evictionLock.lock();
+      try {
+        drainBuffers();
+        return totalWeight;
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    advanceTimerWheel();
+    return totalWeight;
+  }
+
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  // copies of the live entries from the least to the most recently used
+  public Collection<Map.Entry<K, V>> getAll() {
+    if (evictionLock != null) {
+      evictionLock.lock();
+      try {
+        drainBuffers();
+        return copyEntries(wheelTime);
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    return copyEntries(advanceTimerWheel());
+  }
+
+  private Collection<Map.Entry<K, V>> copyEntries(long now) {
+    List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(cache.size());
+    for (CacheEntry<K, V> entry = tail.prev; entry != head; entry = entry.prev) {
+      if (!hasExpired(entry, now)) {
+        entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(entry.key, entry.value));
+      }
+    }
+    return entries;
+  }
+
+  // start recording into the counter, null turns the statistics off
+  public void setStatsCounter(StatsCounter statsCounter) {
+    this.statsCounter = statsCounter;
+  }
+
+  // notify the listener of every eviction, null turns the notifications off
+  public void setEvictionListener(EvictionListener<? super K, ? super V> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  // point-in-time statistics, all zero but the weight when no StatsCounter is set
+  public CacheStats stats() {
+    long weight = weightedSize();
+    StatsCounter stats = statsCounter;
+    return (stats == null) ? new StatsCounter().snapshot(weight) : stats.snapshot(weight);
+  }
+
+  // expire the entries that are due w/o any other cache operation, in the concurrent mode also
+  // replay the buffered reads & writes
+  public void cleanUp() {
+    if (evictionLock != null) {
+      evictionLock.lock();
+      try {
+        drainBuffers();
+      } finally {
+        evictionLock.unlock();
+      }
+      return;
+    }
+    advanceTimerWheel();
+  }
+
+  private V getConcurrently(K key) {
+    StatsCounter stats = statsCounter;
+    CacheEntry<K, V> entry = cache.get(key);
+    long now = readTicker();
+    if (entry == null || hasExpired(entry, now)) {
+      if (stats != null) {
+        stats.recordMisses(1);
+      }
+      if (entry != null) {
+        // let the timer wheel drop it
+        tryToDrainBuffers();
+      }
+      return null;
+    }
+    if (stats != null) {
+      stats.recordHits(1);
+    }
+    if (expireAfterAccessNanos > 0) {
+      entry.accessTime = now;
+    }
+    if (readBuffer.offer(entry)) {
+      tryToDrainBuffers();
+    }
+    return entry.value;
+  }
+
+  private void putConcurrently(K key, V value, int weight) {
+    long now = readTicker();
+    final CacheEntry<K, V> entry = new CacheEntry<K, V>(key, value);
+    entry.weight = weight;
+    entry.writeTime = now;
+    entry.accessTime = now;
+    final CacheEntry<K, V> prior = cache.put(key, entry);
+    afterWrite(new Runnable() {
+      @Override
+      public void run() {
+        if (prior != null) {
+          unlinkEntry(prior);
+        }
+        // a later put() or remove() may have unmapped it already
+        if (cache.get(entry.key) == entry) {
+          addCacheEntryAfterHead(entry);
+          totalWeight += entry.weight;
+          scheduleExpiration(entry);
+          evict();
+        }
+      }
+    });
+  }
+
+  private V removeConcurrently(K key) {
+    final CacheEntry<K, V> entry = cache.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    afterWrite(new Runnable() {
+      @Override
+      public void run() {
+        unlinkEntry(entry);
+      }
+    });
+    return hasExpired(entry, readTicker()) ? null : entry.value;
+  }
+
+  private void afterWrite(Runnable task) {
+    writeBuffer.add(task);
+    tryToDrainBuffers();
+  }
+
+  /**
+   * drain w/o waiting, the lock holder drains whatever was queued before it checks the write
+   * buffer again after unlocking, so a task queued while the lock is taken is never stranded
+   */
+  private void tryToDrainBuffers() {
+    while (evictionLock.tryLock()) {
+      try {
+        drainBuffers();
+      } finally {
+        evictionLock.unlock();
+      }
+      if (writeBuffer.isEmpty()) {
+        return;
+      }
+    }
+  }
+
+  // replay the hits, run the write tasks, then expire & evict, under the eviction lock
+  private void drainBuffers() {
+    readBuffer.drainTo(accessReplayer);
+    Runnable task;
+    while ((task = writeBuffer.poll()) != null) {
+      task.run();
+    }
+    advanceTimerWheel();
+    evict();
+  }
+
+  private long readTicker() {
+    return (timerWheel == null) ? 0L : ticker.read();
+  }
+
+  // pop the least recently used entries until the total weight fits, an entry heavier than the
+  // maximum weight is evicted right after it was written
+  private void evict() {
+    while (totalWeight > maxWeight && tail.prev != head) {
+      evictEntry(tail.prev, EvictionCause.SIZE);
+    }
+  }
+
+  private long advanceTimerWheel() {
+    if (timerWheel == null) {
+      return 0L;
+    }
+    long now = ticker.read();
+    wheelTime = now;
+    timerWheel.advance(now);
+    return now;
+  }
+
+  // from the entry times rather than the scheduled expirationTime, which the concurrent readers
+  // do not update
+  private boolean hasExpired(CacheEntry<K, V> entry, long now) {
+    return (expireAfterWriteNanos > 0 && now - entry.writeTime >= expireAfterWriteNanos)
+        || (expireAfterAccessNanos > 0 && now - entry.accessTime >= expireAfterAccessNanos);
+  }
+
+  private void scheduleExpiration(CacheEntry<K, V> entry) {
+    if (timerWheel == null) {
+      return;
+    }
+    long expirationTime = Long.MAX_VALUE;
+    if (expireAfterWriteNanos > 0) {
+      expirationTime = entry.writeTime + expireAfterWriteNanos;
+    }
+    if (expireAfterAccessNanos > 0) {
+      long accessExpiration = entry.accessTime + expireAfterAccessNanos;
+      if (expireAfterWriteNanos == 0 || accessExpiration - expirationTime < 0) {
+        expirationTime = accessExpiration;
+      }
+    }
+    entry.expirationTime = expirationTime;
+    timerWheel.schedule(entry);
+  }
+
+  private void evictEntry(CacheEntry<K, V> entry, EvictionCause cause) {
+    boolean mapped = cache.remove(entry.key, entry);
+    unlinkEntry(entry);
+    if (!mapped) {
+      // replaced or removed concurrently, not an eviction
+      return;
+    }
+    StatsCounter stats = statsCounter;
+    if (stats != null) {
+      stats.recordEviction(cause, entry.weight);
+    }
+    EvictionListener<? super K, ? super V> listener = evictionListener;
+    if (listener != null) {
+      listener.onEviction(entry.key, entry.value, cause);
+    }
+  }
+
+  // remove the entry from the index, the recency list and the timer wheel
+  private void removeEntry(CacheEntry<K, V> entry) {
+    cache.remove(entry.key, entry);
+    unlinkEntry(entry);
+  }
+
+  // remove the entry from the recency list and the timer wheel, the weight counts linked entries
+  private void unlinkEntry(CacheEntry<K, V> entry) {
+    if (entry.prev != null) {
+      totalWeight -= entry.weight;
+      removeCacheEntry(entry);
+    }
+    if (timerWheel != null) {
+      timerWheel.deschedule(entry);
+    }
   }
 
   private void addCacheEntryAfterHead(CacheEntry<K, V> entry) {
@@ -70,19 +517,25 @@ public class LruCacheWheel<K, V> {
   }
 
   private void removeCacheEntry(CacheEntry<K, V> entry) {
-    if (entry == head || entry == tail) {
+    if (entry == head || entry == tail || entry.prev == null) {
       return;
     }
     entry.next.prev = entry.prev;
     entry.prev.next = entry.next;
+    entry.prev = null;
+    entry.next = null;
   }
 
 
-  private class CacheEntry<K, V> {
+  private static class CacheEntry<K, V> extends TimerWheel.Timer {
     public CacheEntry<K, V> prev;
     public CacheEntry<K, V> next;
     public K key;
-    public V value;
+    // volatile for the readers of the concurrent mode
+    public volatile V value;
+    public int weight;
+    public volatile long writeTime;
+    public volatile long accessTime;
 
     public CacheEntry(K key, V value) {
       this.key = key;
@@ -91,6 +544,20 @@ public class LruCacheWheel<K, V> {
   }
 
 
+  @SuppressWarnings("unchecked")
+  private static <K, V> Weigher<K, V> singletonWeigher() {
+    return (Weigher<K, V>) SINGLETON_WEIGHER;
+  }
+
+  // every entry weighs 1, the maximum weight is the capacity
+  private static final Weigher<Object, Object> SINGLETON_WEIGHER = new Weigher<Object, Object>() {
+    @Override
+    public int weigh(Object key, Object value) {
+      return 1;
+    }
+  };
+
+
   public static void main(String[] args) {
     LruCacheWheel<String, Integer> cache = new LruCacheWheel<String, Integer>(5);
     cache.put("a", 1);
@@ -0,0 +1,337 @@
+package org.skywang.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a LRU cache that keeps its entries outside of the java heap
+ * (1) keys and values are serialized into fixed size slots of direct ByteBuffer slabs, a slab is
+ * allocated only when the previous ones are full
+ * (2) the LRU doubly-linked list is kept inside the slots as int slot numbers, no entry object
+ * (3) keys are looked up in an open addressing (linear probing) int[] index of slot numbers
+ *
+ * slot layout: [prev int][next int][hash int][key length int][value length int][key][value]
+ * an entry whose serialized key and value do not fit in one slot is rejected. the garbage
+ * collector only sees the slabs and one int array, no matter how many entries are cached.
+ * every operation is synchronized on the cache.
+ */
+public class OffHeapLruCache<K, V> {
+  private final static int NIL = -1;
+  private final static int PREV = 0;
+  private final static int NEXT = 4;
+  private final static int HASH = 8;
+  private final static int KEY_LENGTH = 12;
+  private final static int VALUE_LENGTH = 16;
+  private final static int HEADER_SIZE = 20;
+  // upper bound of the size of one slab
+  private final static int MAX_SLAB_BYTES = 1 << 26;
+
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+  private final int capacity;
+  private final int slotSize;
+  private final int slotsPerSlab;
+  private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+  // slot number + 1 per bucket, 0 is an empty bucket
+  private final int[] index;
+  private final int indexMask;
+
+  private int head = NIL;
+  private int tail = NIL;
+  // released slots are chained through their NEXT field
+  private int freeSlot = NIL;
+  // slots below it have been handed out at least once
+  private int allocatedSlots;
+  private int size;
+
+  public OffHeapLruCache(int capacity, int slotSize, Serializer<K> keySerializer,
+      Serializer<V> valueSerializer) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    if (slotSize <= HEADER_SIZE || slotSize > MAX_SLAB_BYTES) {
+      throw new IllegalArgumentException("slot size must be between " + (HEADER_SIZE + 1)
+          + " and " + MAX_SLAB_BYTES + ": " + slotSize);
+    }
+    this.capacity = capacity;
+    this.slotSize = slotSize;
+    this.slotsPerSlab = Math.min(capacity, MAX_SLAB_BYTES / slotSize);
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+
+    int length = 2;
+    while (length < 2L * capacity) {
+      length <<= 1;
+    }
+    this.index = new int[length];
+    this.indexMask = length - 1;
+  }
+
+  public synchronized V get(K key) {
+    byte[] keyBytes = keySerializer.serialize(key);
+    int bucket = findBucket(keyBytes, hash(keyBytes));
+    if (index[bucket] == 0) {
+      return null;
+    }
+    int slot = index[bucket] - 1;
+    moveToHead(slot);
+    return valueSerializer.deserialize(readValue(slot));
+  }
+
+  public synchronized void put(K key, V value) {
+    byte[] keyBytes = keySerializer.serialize(key);
+    byte[] valueBytes = valueSerializer.serialize(value);
+    if (HEADER_SIZE + keyBytes.length + valueBytes.length > slotSize) {
+      throw new IllegalArgumentException("entry of " + (keyBytes.length + valueBytes.length)
+          + " bytes does not fit in a slot of " + slotSize + " bytes");
+    }
+    int hash = hash(keyBytes);
+    int bucket = findBucket(keyBytes, hash);
+    if (index[bucket] != 0) {
+      int slot = index[bucket] - 1;
+      writeValue(slot, keyBytes.length, valueBytes);
+      moveToHead(slot);
+      return;
+    }
+
+    if (size == capacity) {
+      removeSlot(tail);
+      // the backward shift of the eviction may have moved the empty bucket
+      bucket = findBucket(keyBytes, hash);
+    }
+    int slot = allocateSlot();
+    ByteBuffer slab = slabOf(slot);
+    int offset = offsetOf(slot);
+    slab.putInt(offset + HASH, hash);
+    slab.putInt(offset + KEY_LENGTH, keyBytes.length);
+    slab.position(offset + HEADER_SIZE);
+    slab.put(keyBytes);
+    writeValue(slot, keyBytes.length, valueBytes);
+    index[bucket] = slot + 1;
+    linkAtHead(slot);
+    size++;
+  }
+
+  public synchronized boolean remove(K key) {
+    byte[] keyBytes = keySerializer.serialize(key);
+    int bucket = findBucket(keyBytes, hash(keyBytes));
+    if (index[bucket] == 0) {
+      return false;
+    }
+    removeSlot(index[bucket] - 1);
+    return true;
+  }
+
+  public synchronized boolean containsKey(K key) {
+    byte[] keyBytes = keySerializer.serialize(key);
+    return index[findBucket(keyBytes, hash(keyBytes))] != 0;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  // drop every entry, the slabs are kept for reuse
+  public synchronized void clear() {
+    Arrays.fill(index, 0);
+    head = NIL;
+    tail = NIL;
+    freeSlot = NIL;
+    allocatedSlots = 0;
+    size = 0;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  // number of off-heap bytes reserved by the slabs
+  public synchronized long offHeapBytes() {
+    long bytes = 0;
+    for (ByteBuffer slab : slabs) {
+      bytes += slab.capacity();
+    }
+    return bytes;
+  }
+
+  // the bucket holding the key, or the empty bucket where the key would be inserted
+  private int findBucket(byte[] keyBytes, int hash) {
+    int bucket = hash & indexMask;
+    while (index[bucket] != 0) {
+      int slot = index[bucket] - 1;
+      if (slabOf(slot).getInt(offsetOf(slot) + HASH) == hash && keyEquals(slot, keyBytes)) {
+        return bucket;
+      }
+      bucket = (bucket + 1) & indexMask;
+    }
+    return bucket;
+  }
+
+  private boolean keyEquals(int slot, byte[] keyBytes) {
+    ByteBuffer slab = slabOf(slot);
+    int offset = offsetOf(slot);
+    if (slab.getInt(offset + KEY_LENGTH) != keyBytes.length) {
+      return false;
+    }
+    int keyOffset = offset + HEADER_SIZE;
+    for (int i = 0; i < keyBytes.length; i++) {
+      if (slab.get(keyOffset + i) != keyBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // unlink the slot from the LRU list & the index, and release it
+  private void removeSlot(int slot) {
+    ByteBuffer slab = slabOf(slot);
+    int offset = offsetOf(slot);
+    int hash = slab.getInt(offset + HASH);
+    int bucket = hash & indexMask;
+    while (index[bucket] != slot + 1) {
+      bucket = (bucket + 1) & indexMask;
+    }
+    deleteBucket(bucket);
+    unlink(slot);
+    slab.putInt(offset + NEXT, freeSlot);
+    freeSlot = slot;
+    size--;
+  }
+
+  // backward shift deletion, keeps every probe sequence w/o holes and w/o tombstones
+  private void deleteBucket(int bucket) {
+    int hole = bucket;
+    int next = (hole + 1) & indexMask;
+    while (index[next] != 0) {
+      int slot = index[next] - 1;
+      int home = slabOf(slot).getInt(offsetOf(slot) + HASH) & indexMask;
+      // move the entry back if its home is not in the cyclic range (hole, next]
+      if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+        index[hole] = index[next];
+        hole = next;
+      }
+      next = (next + 1) & indexMask;
+    }
+    index[hole] = 0;
+  }
+
+  private int allocateSlot() {
+    if (freeSlot != NIL) {
+      int slot = freeSlot;
+      freeSlot = slabOf(slot).getInt(offsetOf(slot) + NEXT);
+      return slot;
+    }
+    int slot = allocatedSlots++;
+    if (slot / slotsPerSlab == slabs.size()) {
+      slabs.add(ByteBuffer.allocateDirect(slotsPerSlab * slotSize));
+    }
+    return slot;
+  }
+
+  private byte[] readValue(int slot) {
+    ByteBuffer slab = slabOf(slot);
+    int offset = offsetOf(slot);
+    byte[] valueBytes = new byte[slab.getInt(offset + VALUE_LENGTH)];
+    slab.position(offset + HEADER_SIZE + slab.getInt(offset + KEY_LENGTH));
+    slab.get(valueBytes);
+    return valueBytes;
+  }
+
+  private void writeValue(int slot, int keyLength, byte[] valueBytes) {
+    ByteBuffer slab = slabOf(slot);
+    int offset = offsetOf(slot);
+    slab.putInt(offset + VALUE_LENGTH, valueBytes.length);
+    slab.position(offset + HEADER_SIZE + keyLength);
+    slab.put(valueBytes);
+  }
+
+  private void moveToHead(int slot) {
+    if (slot == head) {
+      return;
+    }
+    unlink(slot);
+    linkAtHead(slot);
+  }
+
+  private void linkAtHead(int slot) {
+    setPrev(slot, NIL);
+    setNext(slot, head);
+    if (head != NIL) {
+      setPrev(head, slot);
+    } else {
+      tail = slot;
+    }
+    head = slot;
+  }
+
+  private void unlink(int slot) {
+    int prev = prevOf(slot);
+    int next = nextOf(slot);
+    if (prev != NIL) {
+      setNext(prev, next);
+    } else {
+      head = next;
+    }
+    if (next != NIL) {
+      setPrev(next, prev);
+    } else {
+      tail = prev;
+    }
+  }
+
+  private int prevOf(int slot) {
+    return slabOf(slot).getInt(offsetOf(slot) + PREV);
+  }
+
+  private int nextOf(int slot) {
+    return slabOf(slot).getInt(offsetOf(slot) + NEXT);
+  }
+
+  private void setPrev(int slot, int prev) {
+    slabOf(slot).putInt(offsetOf(slot) + PREV, prev);
+  }
+
+  private void setNext(int slot, int next) {
+    slabOf(slot).putInt(offsetOf(slot) + NEXT, next);
+  }
+
+  private ByteBuffer slabOf(int slot) {
+    return slabs.get(slot / slotsPerSlab);
+  }
+
+  private int offsetOf(int slot) {
+    return (slot % slotsPerSlab) * slotSize;
+  }
+
+  private static int hash(byte[] bytes) {
+    int h = Arrays.hashCode(bytes);
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return h;
+  }
+
+
+  public static void main(String[] args) {
+    OffHeapLruCache<String, String> cache =
+        new OffHeapLruCache<String, String>(5, 64, Serializer.STRING, Serializer.STRING);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.put("c", "3");
+    cache.put("d", "4");
+    cache.put("e", "5");
+    System.out.println("key-a-check-1 - does cache contain key \"a\":" + cache.containsKey("a"));
+    cache.put("f", "6");
+    System.out.println("key-a-check-2 - does cache contain key \"a\":" + cache.containsKey("a"));
+
+    System.out.println("key-b-check-1 - does cache contain key \"b\":" + cache.containsKey("b"));
+    cache.get("b");
+    cache.put("g", "7");
+    System.out.println("key-b-check-2 - does cache contain key \"b\":" + cache.containsKey("b"));
+    System.out.println("off-heap bytes: " + cache.offHeapBytes());
+  }
+
+}
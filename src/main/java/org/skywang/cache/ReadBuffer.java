@@ -0,0 +1,93 @@
+package org.skywang.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * a lossy, striped, multiple producer / single consumer buffer that records cache hits
+ * (1) a reader thread is hashed to one stripe, each stripe is a small ring buffer
+ * (2) offer() is a single CAS on the stripe tail, it never blocks and drops the element when the
+ * stripe is full, losing a few hits only makes the recency order slightly less exact
+ * (3) drainTo() must be called by one thread at a time (the holder of the cache lock), it replays
+ * the recorded elements in batches
+ */
+final class ReadBuffer<E> {
+  // number of elements per stripe, must be a power of two
+  final static int BUFFER_SIZE = 16;
+  // a stripe asks for a drain once it is half full
+  final static int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+  private final static int BUFFER_MASK = BUFFER_SIZE - 1;
+
+  private final Stripe<E>[] stripes;
+  private final int stripeMask;
+
+  // receive the elements replayed by drainTo()
+  interface Consumer<E> {
+    void accept(E e);
+  }
+
+  ReadBuffer() {
+    int ncpu = Runtime.getRuntime().availableProcessors();
+    int stripeCount = 1;
+    while (stripeCount < 4 * ncpu) {
+      stripeCount <<= 1;
+    }
+    @SuppressWarnings("unchecked")
+    Stripe<E>[] newStripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      newStripes[i] = new Stripe<E>();
+    }
+    this.stripes = newStripes;
+    this.stripeMask = stripeCount - 1;
+  }
+
+  // record an element, return true if the stripe is full enough that the caller should drain
+  boolean offer(E e) {
+    Stripe<E> stripe = stripes[stripeIndex()];
+    long head = stripe.readCounter;
+    long tail = stripe.writeCounter.get();
+    long pending = tail - head;
+    if (pending >= BUFFER_SIZE) {
+      return true;
+    }
+    if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+      stripe.buffer.lazySet((int) (tail & BUFFER_MASK), e);
+      return pending + 1 >= DRAIN_THRESHOLD;
+    }
+    // lost the race against another reader of the same stripe, drop the element
+    return false;
+  }
+
+  // replay every published element into the consumer, caller must guarantee a single drainer
+  void drainTo(Consumer<E> consumer) {
+    for (Stripe<E> stripe : stripes) {
+      long head = stripe.readCounter;
+      long tail = stripe.writeCounter.get();
+      while (head < tail) {
+        int index = (int) (head & BUFFER_MASK);
+        E e = stripe.buffer.get(index);
+        if (e == null) {
+          // slot claimed but not yet published, pick it up on the next drain
+          break;
+        }
+        stripe.buffer.lazySet(index, null);
+        consumer.accept(e);
+        head++;
+      }
+      stripe.readCounter = head;
+    }
+  }
+
+  private int stripeIndex() {
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & stripeMask;
+  }
+
+  private static final class Stripe<E> {
+    private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<E>(BUFFER_SIZE);
+    private final AtomicLong writeCounter = new AtomicLong();
+    // only written by the drainer
+    private volatile long readCounter;
+  }
+}
@@ -0,0 +1,43 @@
+package org.skywang.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * converts keys and values to bytes and back, used by the caches that keep their data outside
+ * of the java heap or write it to disk
+ */
+public interface Serializer<T> {
+
+  // UTF-8 encoded strings
+  Serializer<String> STRING = new Serializer<String>() {
+    private final Charset utf8 = Charset.forName("UTF-8");
+
+    @Override
+    public byte[] serialize(String value) {
+      return value.getBytes(utf8);
+    }
+
+    @Override
+    public String deserialize(byte[] bytes) {
+      return new String(bytes, utf8);
+    }
+  };
+
+  // 8 bytes big-endian longs
+  Serializer<Long> LONG = new Serializer<Long>() {
+    @Override
+    public byte[] serialize(Long value) {
+      return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    @Override
+    public Long deserialize(byte[] bytes) {
+      return ByteBuffer.wrap(bytes).getLong();
+    }
+  };
+
+  byte[] serialize(T value);
+
+  T deserialize(byte[] bytes);
+}
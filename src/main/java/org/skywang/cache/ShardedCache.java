@@ -0,0 +1,450 @@
+package org.skywang.cache;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * several caches treated as one logical cache, the keys are spread over the shards by a
+ * consistent hash ring
+ * (1) every shard owns virtualNodes points on a ring of 64-bit hashes, a key belongs to the
+ * shard of the first point at or after the hash of the key (wrapping around)
+ * (2) adding a shard takes over ~1/N of the keys, only the entries whose owner changed are moved
+ * from the other shards, removing a shard moves only its own entries to the others
+ * (3) every shard has its own StatsCounter, shardStats() reports the load & size per shard
+ *
+ * the ring is an immutable sorted array, a lookup is a binary search w/o allocation.
+ * a rebalance copies the moving entries to their new owners while the old ring keeps serving, then
+ * swaps in the new ring under a short write lock and only then removes the moved entries from the
+ * old owners, so a reader never misses an entry that is on its way to another shard.
+ * puts & removes on moving keys during the copy are recorded and replayed from the old owner
+ * right after the swap, cache operations share the read lock, so none is in flight at the swap.
+ */
+public class ShardedCache<K, V> {
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  private final int virtualNodes;
+  private final ReentrantReadWriteLock rebalanceLock = new ReentrantReadWriteLock();
+  private final Lock readLock = rebalanceLock.readLock();
+  private final Lock writeLock = rebalanceLock.writeLock();
+
+  // one rebalance at a time, it guards the shards as well
+  private final ReentrantLock membershipLock = new ReentrantLock();
+
+  private final Map<String, Shard<K, V>> shards = new LinkedHashMap<String, Shard<K, V>>();
+  // replaced under the write lock on rebalance
+  private volatile Ring<K, V> ring = new Ring<K, V>(new ArrayList<Shard<K, V>>(), 0);
+  // non-null while a rebalance copies entries, it collects the writes to the moving keys
+  private volatile Migration<K, V> migration;
+
+  public ShardedCache(int virtualNodes) {
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+    }
+    this.virtualNodes = virtualNodes;
+  }
+
+  public ShardedCache() {
+    this(128);
+  }
+
+  public V get(K key) {
+    readLock.lock();
+    try {
+      Shard<K, V> shard = ring.shardFor(key);
+      if (shard == null) {
+        return null;
+      }
+      V value = shard.cache.get(key);
+      if (value != null) {
+        shard.stats.recordHits(1);
+      } else {
+        shard.stats.recordMisses(1);
+      }
+      return value;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public void put(K key, V value) {
+    readLock.lock();
+    try {
+      Shard<K, V> shard = ring.shardFor(key);
+      if (shard == null) {
+        throw new IllegalStateException("there is no shard");
+      }
+      shard.cache.put(key, value);
+      recordWrite(shard, key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public V remove(K key) {
+    readLock.lock();
+    try {
+      Shard<K, V> shard = ring.shardFor(key);
+      if (shard == null) {
+        return null;
+      }
+      V value = shard.cache.remove(key);
+      recordWrite(shard, key);
+      return value;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  // called under the read lock, a write to a key that changes its owner has to be replayed
+  private void recordWrite(Shard<K, V> shard, K key) {
+    Migration<K, V> current = migration;
+    if (current != null && current.ring.shardFor(key) != shard) {
+      current.dirty.add(key);
+    }
+  }
+
+  public int size() {
+    readLock.lock();
+    try {
+      int size = 0;
+      for (Shard<K, V> shard : ring.shards) {
+        size += shard.cache.size();
+      }
+      return size;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  // the name of the shard that owns the key, null when there is no shard
+  public String shardFor(K key) {
+    Shard<K, V> shard = ring.shardFor(key);
+    return (shard == null) ? null : shard.name;
+  }
+
+  /**
+   * adds a shard to the ring and moves the entries it now owns from the other shards.
+   * returns the number of moved entries.
+   */
+  public int addShard(String name, CacheShard<K, V> cache) {
+    if (name == null || cache == null) {
+      throw new NullPointerException();
+    }
+    membershipLock.lock();
+    try {
+      if (shards.containsKey(name)) {
+        throw new IllegalArgumentException("duplicate shard: " + name);
+      }
+      Shard<K, V> added = new Shard<K, V>(name, cache);
+      List<Shard<K, V>> members = new ArrayList<Shard<K, V>>(shards.values());
+      members.add(added);
+      Ring<K, V> next = new Ring<K, V>(members, virtualNodes);
+
+      Ring<K, V> previous = startMigration(next);
+      Set<K> moved = new HashSet<K>();
+      for (Shard<K, V> shard : previous.shards) {
+        for (Map.Entry<K, V> entry : shard.cache.getAll()) {
+          if (next.shardFor(entry.getKey()) == added) {
+            added.cache.put(entry.getKey(), entry.getValue());
+            moved.add(entry.getKey());
+          }
+        }
+      }
+      finishMigration(previous, next, moved);
+      shards.put(name, added);
+      return moved.size();
+    } finally {
+      membershipLock.unlock();
+    }
+  }
+
+  /**
+   * removes a shard from the ring and moves its entries to the remaining shards, w/o any
+   * remaining shard the entries are dropped. returns the removed cache, it is left empty.
+   */
+  public CacheShard<K, V> removeShard(String name) {
+    membershipLock.lock();
+    try {
+      Shard<K, V> removed = shards.get(name);
+      if (removed == null) {
+        return null;
+      }
+      List<Shard<K, V>> members = new ArrayList<Shard<K, V>>(shards.values());
+      members.remove(removed);
+      Ring<K, V> next = new Ring<K, V>(members, virtualNodes);
+
+      Ring<K, V> previous = startMigration(next);
+      Set<K> moved = new HashSet<K>();
+      for (Map.Entry<K, V> entry : removed.cache.getAll()) {
+        Shard<K, V> shard = next.shardFor(entry.getKey());
+        if (shard != null) {
+          shard.cache.put(entry.getKey(), entry.getValue());
+        }
+        moved.add(entry.getKey());
+      }
+      finishMigration(previous, next, moved);
+      shards.remove(name);
+      return removed.cache;
+    } finally {
+      membershipLock.unlock();
+    }
+  }
+
+  // publishes the migration to the next ring, the write lock waits for the operations in flight,
+  // every later write sees the migration. returns the current ring
+  private Ring<K, V> startMigration(Ring<K, V> next) {
+    writeLock.lock();
+    try {
+      migration = new Migration<K, V>(next);
+      return ring;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * swaps in the next ring, then replays the writes that raced w/ the copy: the old owner holds
+   * the latest value of such a key, or none if it was removed. once the new ring is in place the
+   * old owners get no more requests for the moved keys, so they are removed w/o the write lock.
+   */
+  private void finishMigration(Ring<K, V> previous, Ring<K, V> next, Set<K> moved) {
+    writeLock.lock();
+    try {
+      Migration<K, V> finished = migration;
+      ring = next;
+      migration = null;
+      for (K key : finished.dirty) {
+        Shard<K, V> from = previous.shardFor(key);
+        Shard<K, V> to = next.shardFor(key);
+        V value = from.cache.get(key);
+        if (to != null) {
+          if (value != null) {
+            to.cache.put(key, value);
+          } else {
+            to.cache.remove(key);
+          }
+        }
+        if (value != null) {
+          moved.add(key);
+        } else {
+          moved.remove(key);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    for (K key : moved) {
+      previous.shardFor(key).cache.remove(key);
+    }
+  }
+
+  public List<String> shardNames() {
+    List<String> names = new ArrayList<String>();
+    for (Shard<K, V> shard : ring.shards) {
+      names.add(shard.name);
+    }
+    return names;
+  }
+
+  // per shard hits & misses, the size of the shard is the weightedSize
+  public Map<String, CacheStats> shardStats() {
+    Map<String, CacheStats> stats = new LinkedHashMap<String, CacheStats>();
+    for (Shard<K, V> shard : ring.shards) {
+      stats.put(shard.name, shard.stats.snapshot(shard.cache.size()));
+    }
+    return stats;
+  }
+
+  // a shard over a ConcurrentLruCache, which is thread safe already
+  public static <K, V> CacheShard<K, V> shard(final ConcurrentLruCache<K, V> cache) {
+    return new CacheShard<K, V>() {
+      @Override
+      public V get(K key) {
+        return cache.get(key);
+      }
+
+      @Override
+      public void put(K key, V value) {
+        cache.put(key, value);
+      }
+
+      @Override
+      public V remove(K key) {
+        return cache.remove(key);
+      }
+
+      @Override
+      public int size() {
+        return cache.size();
+      }
+
+      @Override
+      public Collection<Map.Entry<K, V>> getAll() {
+        return cache.getAll();
+      }
+    };
+  }
+
+  // a shard over a LruCacheWheel, every call is synchronized on the cache
+  public static <K, V> CacheShard<K, V> shard(final LruCacheWheel<K, V> cache) {
+    return new CacheShard<K, V>() {
+      @Override
+      public V get(K key) {
+        synchronized (cache) {
+          return cache.get(key);
+        }
+      }
+
+      @Override
+      public void put(K key, V value) {
+        synchronized (cache) {
+          cache.put(key, value);
+        }
+      }
+
+      @Override
+      public V remove(K key) {
+        synchronized (cache) {
+          return cache.remove(key);
+        }
+      }
+
+      @Override
+      public int size() {
+        synchronized (cache) {
+          return cache.size();
+        }
+      }
+
+      @Override
+      public Collection<Map.Entry<K, V>> getAll() {
+        synchronized (cache) {
+          return cache.getAll();
+        }
+      }
+    };
+  }
+
+  // spreads the bits of a 64-bit hash, the finalizer of MurmurHash3
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  // 64-bit FNV-1a of the bytes
+  private static long hash(byte[] bytes) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      h = (h ^ (b & 0xff)) * 0x100000001b3L;
+    }
+    return h;
+  }
+
+
+  private static final class Shard<K, V> {
+    private final String name;
+    private final CacheShard<K, V> cache;
+    private final StatsCounter stats = new StatsCounter();
+
+    private Shard(String name, CacheShard<K, V> cache) {
+      this.name = name;
+      this.cache = cache;
+    }
+  }
+
+  // a rebalance in progress, the keys written during the copy whose owner changes
+  private static final class Migration<K, V> {
+    private final Ring<K, V> ring;
+    private final Set<K> dirty = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+
+    private Migration(Ring<K, V> ring) {
+      this.ring = ring;
+    }
+  }
+
+  // the points of the shards sorted by hash, points[i] belongs to owners[i]
+  private static final class Ring<K, V> {
+    private final List<Shard<K, V>> shards;
+    private final long[] points;
+    private final Shard<K, V>[] owners;
+
+    @SuppressWarnings("unchecked")
+    private Ring(List<Shard<K, V>> shards, int virtualNodes) {
+      this.shards = shards;
+      int count = shards.size() * virtualNodes;
+      long[] keys = new long[count];
+      int i = 0;
+      for (Shard<K, V> shard : shards) {
+        for (int v = 0; v < virtualNodes; v++) {
+          keys[i++] = mix(hash((shard.name + "#" + v).getBytes(UTF8)));
+        }
+      }
+      // sort the points & their owners together
+      Integer[] order = new Integer[count];
+      for (i = 0; i < count; i++) {
+        order[i] = i;
+      }
+      final long[] unsorted = keys;
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          int c = Long.compare(unsorted[a], unsorted[b]);
+          return (c != 0) ? c : Integer.compare(a, b);
+        }
+      });
+      this.points = new long[count];
+      this.owners = (Shard<K, V>[]) new Shard[count];
+      for (i = 0; i < count; i++) {
+        points[i] = unsorted[order[i]];
+        owners[i] = shards.get(order[i] / virtualNodes);
+      }
+    }
+
+    private Shard<K, V> shardFor(Object key) {
+      if (points.length == 0) {
+        return null;
+      }
+      int index = Arrays.binarySearch(points, mix(key.hashCode()));
+      if (index < 0) {
+        index = -index - 1;
+        if (index == points.length) {
+          index = 0;
+        }
+      }
+      return owners[index];
+    }
+  }
+
+  public static void main(String[] args) {
+    ShardedCache<String, Integer> cache = new ShardedCache<String, Integer>();
+    cache.addShard("tenant-a", ShardedCache.shard(new ConcurrentLruCache<String, Integer>(1000)));
+    cache.addShard("tenant-b", ShardedCache.shard(new ConcurrentLruCache<String, Integer>(1000)));
+    for (int i = 0; i < 900; i++) {
+      cache.put("key-" + i, i);
+    }
+    int moved = cache.addShard("tenant-c",
+        ShardedCache.shard(new LruCacheWheel<String, Integer>(1000)));
+    System.out.println("entries moved to tenant-c:" + moved + " of " + cache.size());
+    System.out.println("key-7-check - value of key \"key-7\":" + cache.get("key-7") + " on "
+        + cache.shardFor("key-7"));
+    cache.removeShard("tenant-a");
+    System.out.println("shards after removing tenant-a:" + cache.shardStats().keySet());
+  }
+}
@@ -0,0 +1,60 @@
+package org.skywang.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * accumulates the statistics of a cache w/ LongAdder counters, so that concurrent hits update
+ * striped cells instead of contending on one atomic long
+ *
+ * a cache only records into a StatsCounter that was set on it, w/o one the hot path costs a
+ * single null check. snapshot() gives an immutable point-in-time CacheStats.
+ */
+public class StatsCounter {
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder loadSuccessCount = new LongAdder();
+  private final LongAdder loadFailureCount = new LongAdder();
+  private final LongAdder totalLoadTime = new LongAdder();
+  private final LongAdder[] evictionCount = new LongAdder[EvictionCause.values().length];
+  private final LongAdder evictionWeight = new LongAdder();
+
+  public StatsCounter() {
+    for (int i = 0; i < evictionCount.length; i++) {
+      evictionCount[i] = new LongAdder();
+    }
+  }
+
+  public void recordHits(int count) {
+    hitCount.add(count);
+  }
+
+  public void recordMisses(int count) {
+    missCount.add(count);
+  }
+
+  public void recordLoadSuccess(long loadTimeNanos) {
+    loadSuccessCount.increment();
+    totalLoadTime.add(loadTimeNanos);
+  }
+
+  public void recordLoadFailure(long loadTimeNanos) {
+    loadFailureCount.increment();
+    totalLoadTime.add(loadTimeNanos);
+  }
+
+  public void recordEviction(EvictionCause cause, long weight) {
+    evictionCount[cause.ordinal()].increment();
+    evictionWeight.add(weight);
+  }
+
+  // the counters summed up now, together w/ the current total weight of the cache
+  public CacheStats snapshot(long weightedSize) {
+    long[] evictions = new long[evictionCount.length];
+    for (int i = 0; i < evictions.length; i++) {
+      evictions[i] = evictionCount[i].sum();
+    }
+    return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(),
+        loadFailureCount.sum(), totalLoadTime.sum(), evictions, evictionWeight.sum(),
+        weightedSize);
+  }
+}
@@ -0,0 +1,305 @@
+package org.skywang.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * a lock striped LRU (least recently used) cache implementation
+ * (1) keys are hashed into N independent segments, N is a power of two
+ * (2) each segment is an access ordered LinkedHashMap guarded by its own lock and owns a share of
+ * the total capacity
+ * (3) threads touching different segments never contend, so throughput grows with the number of
+ * segments instead of being capped by one global lock
+ *
+ * the recency order (and therefore eviction) is exact inside a segment and approximate across the
+ * whole cache. get() re-links the access ordered list, so every operation on a segment takes its
+ * exclusive lock, a read lock is not enough.
+ *
+ * getAll(keys), putAll() & invalidateAll() group the keys by segment first, so a multi-key request
+ * takes every touched segment lock once instead of once per key.
+ */
+public class StripedLruCache<K, V> {
+  private final static int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private final static int MAX_SEGMENTS = 1 << 16;
+
+  private final Segment<K, V>[] segments;
+  private final int segmentMask;
+  private final int capacity;
+
+  public StripedLruCache(int capacity, int concurrencyLevel) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity can not be negative: " + capacity);
+    }
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("concurrency level must be positive: " + concurrencyLevel);
+    }
+    this.capacity = capacity;
+
+    // never create more segments than entries, otherwise some segments would have no capacity
+    int limit = Math.min(Math.min(concurrencyLevel, MAX_SEGMENTS), Math.max(capacity, 1));
+    int segmentCount = 1;
+    while (segmentCount < limit) {
+      segmentCount <<= 1;
+    }
+    if (segmentCount > limit && segmentCount > 1) {
+      segmentCount >>= 1;
+    }
+    this.segmentMask = segmentCount - 1;
+
+    @SuppressWarnings("unchecked")
+    Segment<K, V>[] newSegments = new Segment[segmentCount];
+    int share = capacity / segmentCount;
+    int remainder = capacity % segmentCount;
+    for (int i = 0; i < segmentCount; i++) {
+      newSegments[i] = new Segment<K, V>(i < remainder ? share + 1 : share);
+    }
+    this.segments = newSegments;
+  }
+
+  public StripedLruCache(int capacity) {
+    this(capacity, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  public V get(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      return segment.get(key);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  public V put(K key, V value) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      if (segment.capacity == 0) {
+        return null;
+      }
+      return segment.put(key, value);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  // replace the value only if the key is still mapped to oldValue
+  public boolean replace(K key, V oldValue, V newValue) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      V current = segment.get(key);
+      if (current == null || !current.equals(oldValue)) {
+        return false;
+      }
+      segment.put(key, newValue);
+      return true;
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  public V remove(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      return segment.remove(key);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  public boolean containsKey(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    segment.lock.lock();
+    try {
+      return segment.containsKey(key);
+    } finally {
+      segment.lock.unlock();
+    }
+  }
+
+  // the sum of the segment sizes, it is a moment-in-time value only when there are no writers
+  public int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      segment.lock.lock();
+      try {
+        size += segment.size();
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment<K, V> segment : segments) {
+      segment.lock.lock();
+      try {
+        segment.clear();
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  // looks up all the keys, the keys are grouped by segment & each segment is locked once
+  public Map<K, V> getAll(Iterable<? extends K> keys) {
+    Map<K, V> result = new HashMap<K, V>();
+    List<K>[] groups = groupBySegment(keys);
+    for (int i = 0; i < groups.length; i++) {
+      if (groups[i] == null) {
+        continue;
+      }
+      Segment<K, V> segment = segments[i];
+      segment.lock.lock();
+      try {
+        for (K key : groups[i]) {
+          V value = segment.get(key);
+          if (value != null) {
+            result.put(key, value);
+          }
+        }
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+    return result;
+  }
+
+  // puts all the entries, each segment is locked once for the entries it owns
+  public void putAll(Map<? extends K, ? extends V> map) {
+    @SuppressWarnings("unchecked")
+    List<Map.Entry<? extends K, ? extends V>>[] groups = new List[segments.length];
+    for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      int index = hash(entry.getKey()) & segmentMask;
+      if (groups[index] == null) {
+        groups[index] = new ArrayList<Map.Entry<? extends K, ? extends V>>();
+      }
+      groups[index].add(entry);
+    }
+    for (int i = 0; i < groups.length; i++) {
+      Segment<K, V> segment = segments[i];
+      if (groups[i] == null || segment.capacity == 0) {
+        continue;
+      }
+      segment.lock.lock();
+      try {
+        for (Map.Entry<? extends K, ? extends V> entry : groups[i]) {
+          segment.put(entry.getKey(), entry.getValue());
+        }
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  // removes all the keys, each segment is locked once for the keys it owns
+  public void invalidateAll(Iterable<? extends K> keys) {
+    List<K>[] groups = groupBySegment(keys);
+    for (int i = 0; i < groups.length; i++) {
+      if (groups[i] == null) {
+        continue;
+      }
+      Segment<K, V> segment = segments[i];
+      segment.lock.lock();
+      try {
+        for (K key : groups[i]) {
+          segment.remove(key);
+        }
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+  }
+
+  // copy of all entries, segment by segment, each segment from least to most recently used
+  public Collection<Map.Entry<K, V>> getAll() {
+    List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>();
+    for (Segment<K, V> segment : segments) {
+      segment.lock.lock();
+      try {
+        for (Map.Entry<K, V> entry : segment.entrySet()) {
+          result.add(new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), entry.getValue()));
+        }
+      } finally {
+        segment.lock.unlock();
+      }
+    }
+    return result;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public int segmentCount() {
+    return segments.length;
+  }
+
+  // the keys by segment index, null for the segments w/o any key. only one segment lock is held
+  // at a time, so the bulk operations can not deadlock w/ each other
+  @SuppressWarnings("unchecked")
+  private List<K>[] groupBySegment(Iterable<? extends K> keys) {
+    List<K>[] groups = new List[segments.length];
+    for (K key : keys) {
+      int index = hash(key) & segmentMask;
+      if (groups[index] == null) {
+        groups[index] = new ArrayList<K>();
+      }
+      groups[index].add(key);
+    }
+    return groups;
+  }
+
+  private Segment<K, V> segmentFor(Object key) {
+    return segments[hash(key) & segmentMask];
+  }
+
+  // spread the hash code so that keys w/i poor low bits still distribute across segments
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return h;
+  }
+
+  // one independently locked LRU partition of the cache
+  private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+    private final static float loadFactor = 0.75f;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int capacity;
+
+    Segment(int capacity) {
+      super((int) Math.ceil(capacity / loadFactor) + 1, loadFactor, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
+      return size() > capacity;
+    }
+  }
+
+
+  public static void main(String[] args) {
+    StripedLruCache<String, Integer> cache = new StripedLruCache<String, Integer>(1024, 8);
+    for (int i = 0; i < 2048; i++) {
+      cache.put("key-" + i, i);
+    }
+    System.out.println("segments: " + cache.segmentCount() + ", size: " + cache.size());
+    System.out.println("does cache contain key \"key-0\":" + cache.containsKey("key-0"));
+    System.out.println("does cache contain key \"key-2047\":" + cache.containsKey("key-2047"));
+  }
+
+}
@@ -0,0 +1,18 @@
+package org.skywang.cache;
+
+/**
+ * a time source in nanoseconds, the caches read the time through it so that tests can control it
+ */
+public interface Ticker {
+
+  // the ticker backed by System.nanoTime()
+  Ticker SYSTEM = new Ticker() {
+    @Override
+    public long read() {
+      return System.nanoTime();
+    }
+  };
+
+  // current time in nanoseconds, only the difference between two readings is meaningful
+  long read();
+}
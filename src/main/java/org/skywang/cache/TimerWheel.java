@@ -0,0 +1,169 @@
+package org.skywang.cache;
+
+/**
+ * a hierarchical timing wheel that expires cache entries in O(1) amortized time
+ * (1) 5 wheels of buckets, the wheel of a timer is chosen by how far away its expiration is:
+ * ~1.07s x 64 buckets, ~1.14m x 64 buckets, ~1.22h x 32 buckets, ~1.63d x 4 buckets and one
+ * overflow bucket
+ * (2) every bucket is a circular doubly-linked list, (de)scheduling a timer is O(1)
+ * (3) advance() is driven by the cache operations, it visits only the buckets whose time span
+ * has passed. a visited timer either expired or is re-scheduled into a finer wheel (cascading)
+ *
+ * no per-entry scheduled task and no full sweep of the cache. a timer may expire up to one
+ * bucket span late, the owner cache checks the expiration time itself on read.
+ * the wheel is not thread safe, the owner cache serializes the access to it.
+ */
+final class TimerWheel<T extends TimerWheel.Timer> {
+  private final static int[] BUCKETS = {64, 64, 32, 4, 1};
+  private final static long[] SPANS = {
+      ceilingPowerOfTwo(1000000000L), // 1.07s
+      ceilingPowerOfTwo(60 * 1000000000L), // 1.14m
+      ceilingPowerOfTwo(60 * 60 * 1000000000L), // 1.22h
+      ceilingPowerOfTwo(24 * 60 * 60 * 1000000000L), // 1.63d
+      BUCKETS[3] * ceilingPowerOfTwo(24 * 60 * 60 * 1000000000L), // 6.5d
+      BUCKETS[3] * ceilingPowerOfTwo(24 * 60 * 60 * 1000000000L) // 6.5d
+  };
+  private final static long[] SHIFT = {
+      Long.numberOfTrailingZeros(SPANS[0]),
+      Long.numberOfTrailingZeros(SPANS[1]),
+      Long.numberOfTrailingZeros(SPANS[2]),
+      Long.numberOfTrailingZeros(SPANS[3]),
+      Long.numberOfTrailingZeros(SPANS[4])
+  };
+
+  private final Timer[][] wheel;
+  private final Expirer<T> expirer;
+  // time of the last advance
+  private long nanos;
+
+  // a schedulable element, the owner's entries extend it
+  static class Timer {
+    // absolute expiration time in nanoseconds
+    long expirationTime;
+    Timer prevInWheel;
+    Timer nextInWheel;
+  }
+
+  // called for every expired timer, the timer is already unlinked from the wheel
+  interface Expirer<T> {
+    void expire(T timer);
+  }
+
+  TimerWheel(long currentTime, Expirer<T> expirer) {
+    this.nanos = currentTime;
+    this.expirer = expirer;
+    this.wheel = new Timer[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Timer[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        Timer sentinel = new Timer();
+        sentinel.prevInWheel = sentinel;
+        sentinel.nextInWheel = sentinel;
+        wheel[i][j] = sentinel;
+      }
+    }
+  }
+
+  // (re)schedule the timer according to its expirationTime
+  void schedule(T timer) {
+    deschedule(timer);
+    Timer sentinel = findBucket(timer.expirationTime);
+    link(sentinel, timer);
+  }
+
+  // remove the timer from the wheel, a no-op when it is not scheduled
+  void deschedule(T timer) {
+    if (timer.nextInWheel != null) {
+      timer.nextInWheel.prevInWheel = timer.prevInWheel;
+      timer.prevInWheel.nextInWheel = timer.nextInWheel;
+      timer.nextInWheel = null;
+      timer.prevInWheel = null;
+    }
+  }
+
+  // move the wheel to the current time, expiring the timers that are due
+  void advance(long currentTime) {
+    long previousTime = nanos;
+    if (currentTime - previousTime <= 0) {
+      return;
+    }
+    nanos = currentTime;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previousTime >>> SHIFT[i];
+      long currentTicks = currentTime >>> SHIFT[i];
+      if (currentTicks - previousTicks <= 0L) {
+        break;
+      }
+      expire(i, previousTicks, currentTicks);
+    }
+  }
+
+  // drop every timer without expiring it
+  void clear() {
+    for (Timer[] buckets : wheel) {
+      for (Timer sentinel : buckets) {
+        Timer timer = sentinel.nextInWheel;
+        while (timer != sentinel) {
+          Timer next = timer.nextInWheel;
+          timer.prevInWheel = null;
+          timer.nextInWheel = null;
+          timer = next;
+        }
+        sentinel.prevInWheel = sentinel;
+        sentinel.nextInWheel = sentinel;
+      }
+    }
+  }
+
+  // visit the buckets of one wheel between the previous and current tick, inclusive
+  @SuppressWarnings("unchecked")
+  private void expire(int index, long previousTicks, long currentTicks) {
+    Timer[] timerWheel = wheel[index];
+    int mask = timerWheel.length - 1;
+    int steps = (int) Math.min(1 + (currentTicks - previousTicks), timerWheel.length);
+    int start = (int) (previousTicks & mask);
+    int end = start + steps;
+    for (int i = start; i < end; i++) {
+      Timer sentinel = timerWheel[i & mask];
+      Timer timer = sentinel.nextInWheel;
+      sentinel.prevInWheel = sentinel;
+      sentinel.nextInWheel = sentinel;
+      while (timer != sentinel) {
+        Timer next = timer.nextInWheel;
+        timer.prevInWheel = null;
+        timer.nextInWheel = null;
+        if (timer.expirationTime - nanos <= 0) {
+          expirer.expire((T) timer);
+        } else {
+          link(findBucket(timer.expirationTime), timer);
+        }
+        timer = next;
+      }
+    }
+  }
+
+  // the bucket of the coarsest wheel whose span still covers the remaining duration
+  private Timer findBucket(long time) {
+    long duration = time - nanos;
+    int length = wheel.length - 1;
+    for (int i = 0; i < length; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = time >>> SHIFT[i];
+        int index = (int) (ticks & (wheel[i].length - 1));
+        return wheel[i][index];
+      }
+    }
+    return wheel[length][0];
+  }
+
+  private void link(Timer sentinel, Timer timer) {
+    timer.prevInWheel = sentinel.prevInWheel;
+    timer.nextInWheel = sentinel;
+    sentinel.prevInWheel.nextInWheel = timer;
+    sentinel.prevInWheel = timer;
+  }
+
+  private static long ceilingPowerOfTwo(long x) {
+    return 1L << (64 - Long.numberOfLeadingZeros(x - 1));
+  }
+}
@@ -0,0 +1,287 @@
+package org.skywang.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a W-TinyLFU cache, a LRU that is not wiped out by one-off scans
+ * (1) new entries land in a small admission window LRU (1% of the capacity)
+ * (2) an entry leaving the window competes w/i the eviction victim of the main space, the one w/i
+ * the higher estimated access frequency stays
+ * (3) the main space is a segmented LRU: probation (20%) for entries seen once in main, protected
+ * (80%) for entries hit again while on probation
+ * (4) access frequencies are estimated by a 4-bit count-min FrequencySketch that halves all
+ * counters periodically, so yesterday's popular keys do not stay forever
+ *
+ * every operation is synchronized on the cache, hit & miss counters are kept for comparing the
+ * hit rate w/i LruCacheWheel & ConcurrentLruCache.
+ */
+public class TinyLfuCache<K, V> {
+  private final static int WINDOW = 0;
+  private final static int PROBATION = 1;
+  private final static int PROTECTED = 2;
+
+  private final HashMap<K, Node<K, V>> data;
+  private final FrequencySketch<K> sketch;
+  private final int capacity;
+  private final int maxWindow;
+  private final int maxProtected;
+
+  private final AccessOrderList<K, V> window = new AccessOrderList<K, V>();
+  private final AccessOrderList<K, V> probation = new AccessOrderList<K, V>();
+  private final AccessOrderList<K, V> protectedList = new AccessOrderList<K, V>();
+
+  private long hitCount;
+  private long missCount;
+
+  public TinyLfuCache(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity can not be negative: " + capacity);
+    }
+    this.capacity = capacity;
+    this.maxWindow = Math.min(capacity, Math.max(1, capacity / 100));
+    this.maxProtected = (int) ((capacity - maxWindow) * 0.8);
+    this.data = new HashMap<K, Node<K, V>>();
+    this.sketch = new FrequencySketch<K>(capacity);
+  }
+
+  public synchronized V get(K key) {
+    sketch.increment(key);
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    onHit(node);
+    return node.value;
+  }
+
+  public synchronized V put(K key, V value) {
+    if (capacity == 0) {
+      return null;
+    }
+    sketch.increment(key);
+    Node<K, V> node = data.get(key);
+    if (node != null) {
+      V oldValue = node.value;
+      node.value = value;
+      onHit(node);
+      return oldValue;
+    }
+    node = new Node<K, V>(key, value);
+    node.queue = WINDOW;
+    data.put(key, node);
+    window.addLast(node);
+    evict();
+    return null;
+  }
+
+  public synchronized V remove(K key) {
+    Node<K, V> node = data.remove(key);
+    if (node == null) {
+      return null;
+    }
+    listOf(node).remove(node);
+    return node.value;
+  }
+
+  public synchronized boolean containsKey(K key) {
+    return data.containsKey(key);
+  }
+
+  public synchronized int size() {
+    return data.size();
+  }
+
+  public synchronized void clear() {
+    data.clear();
+    window.clear();
+    probation.clear();
+    protectedList.clear();
+    sketch.clear();
+  }
+
+  // copy of the entries, window first, then probation & protected, each from least to most
+  // recently used
+  public synchronized Collection<Map.Entry<K, V>> getAll() {
+    List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>(data.size());
+    window.copyTo(result);
+    probation.copyTo(result);
+    protectedList.copyTo(result);
+    return result;
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  // ratio of the get() calls that found an entry, 1.0 when nothing was requested yet
+  public synchronized double hitRate() {
+    long requestCount = hitCount + missCount;
+    return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+  }
+
+  private void onHit(Node<K, V> node) {
+    if (node.queue == WINDOW) {
+      window.moveToLast(node);
+    } else if (node.queue == PROBATION) {
+      // a second hit in the main space, promote to protected
+      probation.remove(node);
+      node.queue = PROTECTED;
+      protectedList.addLast(node);
+      while (protectedList.size > maxProtected) {
+        Node<K, V> demoted = protectedList.first();
+        protectedList.remove(demoted);
+        demoted.queue = PROBATION;
+        probation.addLast(demoted);
+      }
+    } else {
+      protectedList.moveToLast(node);
+    }
+  }
+
+  // move the overflow of the window into probation, then let the frequency sketch decide which
+  // of the window candidate & the main victim is kept
+  private void evict() {
+    while (window.size > maxWindow) {
+      Node<K, V> candidate = window.first();
+      window.remove(candidate);
+      candidate.queue = PROBATION;
+      probation.addLast(candidate);
+
+      if (data.size() <= capacity) {
+        continue;
+      }
+      Node<K, V> victim = probation.first();
+      if (victim == candidate) {
+        victim = protectedList.first();
+      }
+      if (victim == null || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        evictEntry(victim == null ? candidate : victim);
+      } else {
+        evictEntry(candidate);
+      }
+    }
+    // only happens when the window alone is the whole capacity
+    while (data.size() > capacity) {
+      evictEntry(window.first());
+    }
+  }
+
+  private void evictEntry(Node<K, V> node) {
+    data.remove(node.key);
+    listOf(node).remove(node);
+  }
+
+  private AccessOrderList<K, V> listOf(Node<K, V> node) {
+    if (node.queue == WINDOW) {
+      return window;
+    } else if (node.queue == PROBATION) {
+      return probation;
+    } else {
+      return protectedList;
+    }
+  }
+
+
+  private static final class Node<K, V> {
+    private final K key;
+    private V value;
+    private int queue;
+    private Node<K, V> prev;
+    private Node<K, V> next;
+
+    Node(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  // doubly-linked list from the least (first) to the most (last) recently used node
+  private static final class AccessOrderList<K, V> {
+    private final Node<K, V> head = new Node<K, V>(null, null);
+    private final Node<K, V> tail = new Node<K, V>(null, null);
+    private int size;
+
+    AccessOrderList() {
+      head.next = tail;
+      tail.prev = head;
+    }
+
+    Node<K, V> first() {
+      return (head.next == tail) ? null : head.next;
+    }
+
+    void addLast(Node<K, V> node) {
+      node.prev = tail.prev;
+      node.next = tail;
+      tail.prev.next = node;
+      tail.prev = node;
+      size++;
+    }
+
+    void remove(Node<K, V> node) {
+      node.prev.next = node.next;
+      node.next.prev = node.prev;
+      node.prev = null;
+      node.next = null;
+      size--;
+    }
+
+    void moveToLast(Node<K, V> node) {
+      remove(node);
+      addLast(node);
+    }
+
+    void clear() {
+      head.next = tail;
+      tail.prev = head;
+      size = 0;
+    }
+
+    void copyTo(List<Map.Entry<K, V>> result) {
+      for (Node<K, V> node = head.next; node != tail; node = node.next) {
+        result.add(new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value));
+      }
+    }
+  }
+
+
+  public static void main(String[] args) {
+    TinyLfuCache<Integer, Integer> tinyLfu = new TinyLfuCache<Integer, Integer>(100);
+    StripedLruCache<Integer, Integer> lru = new StripedLruCache<Integer, Integer>(100, 1);
+    int lruHits = 0;
+    int lruRequests = 0;
+    // 50 hot keys, interleaved w/i a scan over one-off keys
+    for (int round = 0; round < 100; round++) {
+      for (int key = 0; key < 50; key++) {
+        lruRequests++;
+        if (lru.get(key) != null) {
+          lruHits++;
+        } else {
+          lru.put(key, key);
+        }
+        if (tinyLfu.get(key) == null) {
+          tinyLfu.put(key, key);
+        }
+      }
+      for (int scan = 0; scan < 200; scan++) {
+        int key = 1000 + round * 200 + scan;
+        lru.put(key, key);
+        tinyLfu.put(key, key);
+      }
+    }
+    System.out.println("hit rate of hot keys, lru: " + ((double) lruHits / lruRequests)
+        + ", w-tinylfu: " + tinyLfu.hitRate());
+  }
+
+}
@@ -0,0 +1,146 @@
+package org.skywang.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * a two tier cache, a small LruCacheWheel on the heap in front of a larger LogStore on disk
+ * (1) the LRU tail evicted from the heap tier is appended to the log instead of being dropped
+ * (2) a heap miss is served from the log, the entry moves back to the heap tier
+ * (3) the tiers are exclusive, an entry is either on the heap or in the log
+ *
+ * a small heap fronts a much larger working set this way, a log hit costs one positional read
+ * and a deserialization instead of a trip to the origin. the log drops its oldest entries when
+ * it grows over maxDiskBytes, and compacts itself in the background.
+ * every operation is synchronized on the cache.
+ */
+public class TwoTierCache<K, V> implements Closeable {
+  private final LruCacheWheel<K, V> heap;
+  private final LogStore<K, V> disk;
+
+  private long heapHitCount;
+  private long diskHitCount;
+  private long missCount;
+  // an eviction that could not be written to the log, rethrown by the operation that evicted
+  private IOException spillFailure;
+
+  public TwoTierCache(int heapCapacity, Path directory, long maxDiskBytes,
+      Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+    this.heap = new LruCacheWheel<K, V>(heapCapacity);
+    this.disk = new LogStore<K, V>(directory, maxDiskBytes, keySerializer, valueSerializer);
+    heap.setEvictionListener(new EvictionListener<K, V>() {
+      @Override
+      public void onEviction(K key, V value, EvictionCause cause) {
+        spill(key, value);
+      }
+    });
+  }
+
+  public synchronized V get(K key) throws IOException {
+    V value = heap.get(key);
+    if (value != null) {
+      heapHitCount++;
+      return value;
+    }
+    value = disk.get(key);
+    if (value == null) {
+      missCount++;
+      return null;
+    }
+    diskHitCount++;
+    // promote, the heap tail moves to the log
+    disk.remove(key);
+    heap.put(key, value);
+    rethrowSpillFailure();
+    return value;
+  }
+
+  public synchronized void put(K key, V value) throws IOException {
+    heap.put(key, value);
+    disk.remove(key);
+    rethrowSpillFailure();
+  }
+
+  public synchronized V remove(K key) throws IOException {
+    V value = heap.remove(key);
+    if (value == null) {
+      value = disk.get(key);
+      disk.remove(key);
+    }
+    return value;
+  }
+
+  public synchronized boolean containsKey(K key) {
+    return heap.containsKey(key) || disk.containsKey(key);
+  }
+
+  public synchronized int size() {
+    return heap.size() + disk.size();
+  }
+
+  public synchronized int heapSize() {
+    return heap.size();
+  }
+
+  public synchronized int diskSize() {
+    return disk.size();
+  }
+
+  public synchronized long heapHitCount() {
+    return heapHitCount;
+  }
+
+  public synchronized long diskHitCount() {
+    return diskHitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  // deletes the log file
+  @Override
+  public void close() throws IOException {
+    disk.close();
+  }
+
+  // called by the heap tier under the cache lock
+  private void spill(K key, V value) {
+    try {
+      disk.put(key, value);
+    } catch (IOException e) {
+      // the entry is lost, as if there was no disk tier
+      if (spillFailure == null) {
+        spillFailure = e;
+      }
+    }
+  }
+
+  private void rethrowSpillFailure() throws IOException {
+    IOException failure = spillFailure;
+    if (failure != null) {
+      spillFailure = null;
+      throw failure;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path directory = Files.createTempDirectory("two-tier-cache");
+    TwoTierCache<String, String> cache = new TwoTierCache<String, String>(2, directory,
+        1 << 20, Serializer.STRING, Serializer.STRING);
+    try {
+      cache.put("a", "1");
+      cache.put("b", "2");
+      cache.put("c", "3");
+      System.out.println("key-a-check-1 - is key \"a\" in the log:" + cache.disk.containsKey("a"));
+      System.out.println("key-a-check-2 - value of key \"a\":" + cache.get("a"));
+      System.out.println("key-b-check - does cache contain key \"b\":" + cache.containsKey("b"));
+      System.out.println("hits heap/disk:" + cache.heapHitCount() + "/" + cache.diskHitCount());
+    } finally {
+      cache.close();
+      Files.deleteIfExists(directory);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package org.skywang.cache;
+
+/**
+ * computes the weight of a cache entry, e.g. its approximate size in bytes. a cache bounded by a
+ * maximum total weight evicts least recently used entries until the sum of the weights fits.
+ * the weight of an entry is computed once when it is written and must not be negative.
+ */
+public interface Weigher<K, V> {
+
+  int weigh(K key, V value);
+}
@@ -0,0 +1,254 @@
+package org.skywang.cache.simulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.skywang.cache.BufferedLruCache;
+import org.skywang.cache.ClockCache;
+import org.skywang.cache.ConcurrentLruCache;
+import org.skywang.cache.LongLongLruCache;
+import org.skywang.cache.LruCacheWheel;
+import org.skywang.cache.StripedLruCache;
+import org.skywang.cache.TinyLfuCache;
+
+/**
+ * replays a key trace through the cache policies to compare their hit rates offline
+ * (1) the trace is streamed by TraceReader from a memory mapped file, it is never loaded into the
+ * heap
+ * (2) every policy & capacity pair replays the trace in its own task, the tasks run in parallel
+ * and share the mapped pages through the page cache
+ * (3) a miss is followed by a put(), as a cache in front of a slower store would do
+ *
+ * run w/ "java org.skywang.cache.simulator.Simulator <trace> <text|binary> [capacities] [policies]",
+ * e.g. "... trace.txt text 1000,10000,100000 LruCacheWheel,TinyLfuCache", the hit rate curves are
+ * printed as a table of capacity x policy.
+ */
+public class Simulator {
+  public final static String[] POLICIES = {"LruCacheWheel", "ConcurrentLruCache",
+      "StripedLruCache", "BufferedLruCache", "TinyLfuCache", "LongLongLruCache", "ClockCache",
+      "ClockProCache"};
+  private final static int[] CAPACITIES = {1 << 10, 1 << 13, 1 << 16, 1 << 19};
+
+  private final Path trace;
+  private final TraceReader.Format format;
+
+  public Simulator(Path trace, TraceReader.Format format) {
+    if (trace == null || format == null) {
+      throw new NullPointerException();
+    }
+    this.trace = trace;
+    this.format = format;
+  }
+
+  // the hit rates indexed by [policy][capacity]
+  public double[][] simulate(String[] policies, int[] capacities)
+      throws IOException, InterruptedException {
+    for (String policy : policies) {
+      // fail before starting any task
+      create(policy, 1);
+    }
+    int tasks = policies.length * capacities.length;
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(tasks, Runtime.getRuntime().availableProcessors())));
+    try {
+      List<Future<Double>> futures = new ArrayList<Future<Double>>(tasks);
+      for (final String policy : policies) {
+        for (final int capacity : capacities) {
+          futures.add(executor.submit(new Callable<Double>() {
+            @Override
+            public Double call() throws IOException {
+              return replay(policy, capacity);
+            }
+          }));
+        }
+      }
+      double[][] hitRates = new double[policies.length][capacities.length];
+      for (int i = 0; i < tasks; i++) {
+        hitRates[i / capacities.length][i % capacities.length] = await(futures.get(i));
+      }
+      return hitRates;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // the hit rate of one policy at one capacity
+  public double replay(String policy, int capacity) throws IOException {
+    Policy cache = create(policy, capacity);
+    long hits = 0;
+    long requests = 0;
+    try (TraceReader reader = new TraceReader(trace, format)) {
+      while (reader.hasNext()) {
+        if (cache.record(reader.next())) {
+          hits++;
+        }
+        requests++;
+      }
+    }
+    return (requests == 0) ? 0.0 : (double) hits / requests;
+  }
+
+  public static void print(PrintStream out, String[] policies, int[] capacities,
+      double[][] hitRates) {
+    out.printf("%-12s", "capacity");
+    for (String policy : policies) {
+      out.printf("%20s", policy);
+    }
+    out.println();
+    for (int j = 0; j < capacities.length; j++) {
+      out.printf("%-12d", capacities[j]);
+      for (int i = 0; i < policies.length; i++) {
+        out.printf("%19.2f%%", 100 * hitRates[i][j]);
+      }
+      out.println();
+    }
+  }
+
+  private static double await(Future<Double> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  // a cache under simulation, record() looks the key up and returns whether it was a hit
+  interface Policy {
+    boolean record(long key);
+  }
+
+  static Policy create(String name, int capacity) {
+    if ("LruCacheWheel".equals(name)) {
+      final LruCacheWheel<Long, Long> lru = new LruCacheWheel<Long, Long>(capacity);
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (lru.get(key) != null) {
+            return true;
+          }
+          lru.put(key, key);
+          return false;
+        }
+      };
+    } else if ("ConcurrentLruCache".equals(name)) {
+      final ConcurrentLruCache<Long, Long> lru = new ConcurrentLruCache<Long, Long>(capacity);
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (lru.get(key) != null) {
+            return true;
+          }
+          lru.put(key, key);
+          return false;
+        }
+      };
+    } else if ("StripedLruCache".equals(name)) {
+      final StripedLruCache<Long, Long> lru = new StripedLruCache<Long, Long>(capacity);
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (lru.get(key) != null) {
+            return true;
+          }
+          lru.put(key, key);
+          return false;
+        }
+      };
+    } else if ("BufferedLruCache".equals(name)) {
+      final BufferedLruCache<Long, Long> lru = new BufferedLruCache<Long, Long>(capacity);
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (lru.get(key) != null) {
+            return true;
+          }
+          lru.put(key, key);
+          return false;
+        }
+      };
+    } else if ("TinyLfuCache".equals(name)) {
+      final TinyLfuCache<Long, Long> tinyLfu = new TinyLfuCache<Long, Long>(capacity);
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (tinyLfu.get(key) != null) {
+            return true;
+          }
+          tinyLfu.put(key, key);
+          return false;
+        }
+      };
+    } else if ("LongLongLruCache".equals(name)) {
+      final LongLongLruCache lru = new LongLongLruCache(capacity);
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (lru.containsKey(key)) {
+            // get() moves the key to the MRU end
+            lru.get(key, 0);
+            return true;
+          }
+          lru.put(key, key);
+          return false;
+        }
+      };
+    } else if ("ClockCache".equals(name) || "ClockProCache".equals(name)) {
+      final ClockCache<Long, Long> clock =
+          new ClockCache<Long, Long>(capacity, "ClockProCache".equals(name));
+      return new Policy() {
+        @Override
+        public boolean record(long key) {
+          if (clock.get(key) != null) {
+            return true;
+          }
+          clock.put(key, key);
+          return false;
+        }
+      };
+    }
+    throw new IllegalArgumentException("unknown policy: " + name);
+  }
+
+  private static int[] parseCapacities(String arg) {
+    String[] parts = arg.split(",");
+    int[] capacities = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      capacities[i] = Integer.parseInt(parts[i].trim());
+    }
+    return capacities;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("usage: Simulator <trace> <text|binary> [capacity,...] [policy,...]");
+      System.exit(1);
+    }
+    Path trace = Paths.get(args[0]);
+    TraceReader.Format format = TraceReader.Format.valueOf(args[1].toUpperCase());
+    int[] capacities = (args.length > 2) ? parseCapacities(args[2]) : CAPACITIES;
+    String[] policies = (args.length > 3) ? args[3].split(",") : POLICIES;
+
+    long start = System.nanoTime();
+    double[][] hitRates = new Simulator(trace, format).simulate(policies, capacities);
+    print(System.out, policies, capacities, hitRates);
+    System.out.printf("%d policies x %d capacities in %.1f s%n", policies.length,
+        capacities.length, (System.nanoTime() - start) / 1e9);
+  }
+}
@@ -0,0 +1,139 @@
+package org.skywang.cache.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * streams the keys of a trace file w/o loading the file into the heap
+ * (1) the file is memory mapped one region (1 GiB) at a time, so a trace can be larger than the
+ * heap and larger than the 2 GiB limit of a single mapping
+ * (2) TEXT: one key per line (any whitespace separates keys), a decimal key is used as is, any
+ * other key is hashed to a long (64-bit FNV-1a)
+ * (3) BINARY: big-endian 8 byte longs, a trailing partial long is ignored
+ *
+ * hasNext() / next() work on primitive longs, nothing is allocated per key.
+ */
+public class TraceReader implements Closeable {
+  private final static long REGION_SIZE = 1L << 30;
+  private final static long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private final static long FNV_PRIME = 0x100000001b3L;
+
+  public enum Format {
+    TEXT, BINARY
+  }
+
+  private final FileChannel channel;
+  private final Format format;
+  private final long length;
+  // file offset of the next region to map
+  private long position;
+  private MappedByteBuffer region;
+
+  private boolean hasNext;
+  private long nextKey;
+
+  public TraceReader(Path trace, Format format) throws IOException {
+    if (format == null) {
+      throw new NullPointerException("format");
+    }
+    this.format = format;
+    this.channel = FileChannel.open(trace, StandardOpenOption.READ);
+    this.length = channel.size();
+    advance();
+  }
+
+  public boolean hasNext() {
+    return hasNext;
+  }
+
+  public long next() throws IOException {
+    if (!hasNext) {
+      throw new NoSuchElementException();
+    }
+    long key = nextKey;
+    advance();
+    return key;
+  }
+
+  @Override
+  public void close() throws IOException {
+    region = null;
+    channel.close();
+  }
+
+  // reads the key after the current one into nextKey
+  private void advance() throws IOException {
+    if (format == Format.BINARY) {
+      hasNext = advanceBinary();
+    } else {
+      hasNext = advanceText();
+    }
+  }
+
+  private boolean advanceBinary() throws IOException {
+    if ((region == null || region.remaining() < 8) && !mapNextRegion()) {
+      return false;
+    }
+    if (region.remaining() < 8) {
+      // trailing partial long
+      return false;
+    }
+    nextKey = region.getLong();
+    return true;
+  }
+
+  private boolean advanceText() throws IOException {
+    int b = nextByte();
+    while (b >= 0 && isWhitespace(b)) {
+      b = nextByte();
+    }
+    if (b < 0) {
+      return false;
+    }
+    // a key may straddle two regions, the state is kept across nextByte()
+    boolean numeric = true;
+    long value = 0;
+    long hash = FNV_OFFSET_BASIS;
+    int digits = 0;
+    do {
+      hash = (hash ^ b) * FNV_PRIME;
+      if (numeric && b >= '0' && b <= '9' && digits < 18) {
+        value = value * 10 + (b - '0');
+        digits++;
+      } else {
+        numeric = false;
+      }
+      b = nextByte();
+    } while (b >= 0 && !isWhitespace(b));
+    nextKey = numeric ? value : hash;
+    return true;
+  }
+
+  // the next byte of the file, -1 at the end
+  private int nextByte() throws IOException {
+    if ((region == null || !region.hasRemaining()) && !mapNextRegion()) {
+      return -1;
+    }
+    return region.get() & 0xff;
+  }
+
+  private boolean mapNextRegion() throws IOException {
+    if (position >= length) {
+      return false;
+    }
+    long size = Math.min(REGION_SIZE, length - position);
+    // the previous region is unmapped once it is garbage collected
+    region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    position += size;
+    return true;
+  }
+
+  private static boolean isWhitespace(int b) {
+    return b == '\n' || b == '\r' || b == ' ' || b == '\t';
+  }
+}
@@ -8,8 +8,14 @@ public class HelloQueue<E> {
   private int size = 0;
   private final static int DEFAULT_CAPACITY = 8;
 
+  // w/o a type (e.g. a queue of a type parameter) the elements are kept in an Object[]
+  @SuppressWarnings("unchecked")
   public HelloQueue(Class<E> type, int size) {
-    this.elementArray = (E[]) Array.newInstance(type, size);
+    if (type == null) {
+      this.elementArray = (E[]) new Object[size];
+    } else {
+      this.elementArray = (E[]) Array.newInstance(type, size);
+    }
   }
 
   public HelloQueue(Class<E> type) {
@@ -8,8 +8,14 @@ public class HelloStack<E> {
   private int size = 0;
   private static final int DEFAULT_CAPACITY = 8; // can be configurable
 
+  // w/o a type (e.g. a stack of a type parameter) the elements are kept in an Object[]
+  @SuppressWarnings("unchecked")
   public HelloStack(Class<E> type, int size) {
-    this.elementArray = (E[]) Array.newInstance(type, size);
+    if (type == null) {
+      this.elementArray = (E[]) new Object[size];
+    } else {
+      this.elementArray = (E[]) Array.newInstance(type, size);
+    }
   }
 
   public HelloStack(Class<E> type) {
@@ -0,0 +1,671 @@
+package org.skywang.tree;
+
+import java.util.NoSuchElementException;
+
+import org.skywang.linear.HelloQueue;
+
+/**
+ * an in-memory B+tree w/ the ordered symbol table api of BinarySearchTree
+ * (1) a node holds up to order keys in a plain array, a lookup is a binary search w/i the node and
+ * touches only log_order(n) nodes, instead of one cache missing object per key comparison
+ * (2) the entries live in the leaves only, the leaves are linked in key order, so keys(lo, hi)
+ * walks the leaves sequentially instead of recursing through the inner nodes
+ * (3) an inner node keeps the number of keys below each of its children, so rank() & select()
+ * are O(log n) as well
+ *
+ * a full node splits in half on put, a node that falls under half full borrows an entry from a
+ * sibling or is merged into it on delete, so all the leaves stay at the same depth.
+ */
+public class BPlusTree<Key extends Comparable<Key>, Value>
+    implements OrderedSymbolTable<Key, Value> {
+  private final static int DEFAULT_ORDER = 128;
+  private final static int MIN_ORDER = 4;
+
+  // max keys per leaf, max children per inner node
+  private final int order;
+  // min keys per leaf, min children per inner node, except for the root
+  private final int minFill;
+  private Node root;
+  private int size;
+
+  private static abstract class Node {
+    // number of keys in the node, an inner node has n + 1 children
+    int n;
+    final Object[] keys;
+
+    Node(int capacity) {
+      this.keys = new Object[capacity];
+    }
+  }
+
+  // keys & values of the entries, w/ room for one more key before a split
+  private static final class Leaf extends Node {
+    final Object[] values;
+    Leaf prev;
+    Leaf next;
+
+    Leaf(int order) {
+      super(order + 1);
+      this.values = new Object[order + 1];
+    }
+  }
+
+  // keys[i] separates children[i] (keys < keys[i]) from children[i + 1] (keys >= keys[i]),
+  // counts[i] is the number of entries below children[i]
+  private static final class Inner extends Node {
+    final Node[] children;
+    final int[] counts;
+
+    Inner(int order) {
+      super(order);
+      this.children = new Node[order + 1];
+      this.counts = new int[order + 1];
+    }
+  }
+
+  // the right half of a split node and the key that separates it from the left half
+  private static final class Split {
+    final Object key;
+    final Node right;
+    final int rightSize;
+
+    Split(Object key, Node right, int rightSize) {
+      this.key = key;
+      this.right = right;
+      this.rightSize = rightSize;
+    }
+  }
+
+  public BPlusTree(int order) {
+    if (order < MIN_ORDER) {
+      throw new IllegalArgumentException("order must be at least " + MIN_ORDER + ": " + order);
+    }
+    this.order = order;
+    this.minFill = order / 2;
+    this.root = new Leaf(order);
+  }
+
+  public BPlusTree() {
+    this(DEFAULT_ORDER);
+  }
+
+  public int order() {
+    return order;
+  }
+
+  // get size (entry #) of the tree
+  @Override
+  public int size() {
+    return size;
+  }
+
+  // is the tree empty
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  // does the tree contain key-value pair w/i the given key
+  @Override
+  public boolean contain(Key key) {
+    return get(key) != null;
+  }
+
+  // return the associated value of the given key. null if the given key is not existed
+  @SuppressWarnings("unchecked")
+  @Override
+  public Value get(Key key) {
+    Leaf leaf = leafFor(key);
+    int i = lowerBound(leaf, key);
+    if (i < leaf.n && key.compareTo(key(leaf.keys[i])) == 0) {
+      return (Value) leaf.values[i];
+    }
+    return null;
+  }
+
+  // put the key-value pair into the tree, if key is already exists, update the value
+  @Override
+  public void put(Key key, Value value) {
+    if (value == null) {
+      delete(key);
+      return;
+    }
+    Split split = put(root, key, value);
+    if (split != null) {
+      // the root split, the tree grows by one level
+      Inner newRoot = new Inner(order);
+      newRoot.n = 1;
+      newRoot.keys[0] = split.key;
+      newRoot.children[0] = root;
+      newRoot.children[1] = split.right;
+      newRoot.counts[0] = size - split.rightSize;
+      newRoot.counts[1] = split.rightSize;
+      root = newRoot;
+    }
+    assert check();
+  }
+
+  private Split put(Node node, Key key, Value value) {
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      int i = lowerBound(leaf, key);
+      if (i < leaf.n && key.compareTo(key(leaf.keys[i])) == 0) {
+        leaf.values[i] = value;
+        return null;
+      }
+      System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.n - i);
+      System.arraycopy(leaf.values, i, leaf.values, i + 1, leaf.n - i);
+      leaf.keys[i] = key;
+      leaf.values[i] = value;
+      leaf.n++;
+      size++;
+      return (leaf.n > order) ? splitLeaf(leaf) : null;
+    }
+
+    Inner inner = (Inner) node;
+    int i = upperBound(inner, key);
+    int before = size;
+    Split split = put(inner.children[i], key, value);
+    if (size != before) {
+      inner.counts[i]++;
+    }
+    if (split == null) {
+      return null;
+    }
+    System.arraycopy(inner.keys, i, inner.keys, i + 1, inner.n - i);
+    System.arraycopy(inner.children, i + 1, inner.children, i + 2, inner.n - i);
+    System.arraycopy(inner.counts, i + 1, inner.counts, i + 2, inner.n - i);
+    inner.keys[i] = split.key;
+    inner.children[i + 1] = split.right;
+    inner.counts[i] -= split.rightSize;
+    inner.counts[i + 1] = split.rightSize;
+    inner.n++;
+    return (inner.n >= order) ? splitInner(inner) : null;
+  }
+
+  // moves the upper half of an overfull leaf to a new leaf linked after it
+  private Split splitLeaf(Leaf leaf) {
+    int mid = leaf.n / 2;
+    Leaf right = new Leaf(order);
+    right.n = leaf.n - mid;
+    System.arraycopy(leaf.keys, mid, right.keys, 0, right.n);
+    System.arraycopy(leaf.values, mid, right.values, 0, right.n);
+    for (int i = mid; i < leaf.n; i++) {
+      leaf.keys[i] = null;
+      leaf.values[i] = null;
+    }
+    leaf.n = mid;
+
+    right.next = leaf.next;
+    if (right.next != null) {
+      right.next.prev = right;
+    }
+    right.prev = leaf;
+    leaf.next = right;
+    return new Split(right.keys[0], right, right.n);
+  }
+
+  // moves the upper half of an overfull inner node to a new node, the middle key moves up
+  private Split splitInner(Inner inner) {
+    int mid = inner.n / 2;
+    Object promoted = inner.keys[mid];
+    Inner right = new Inner(order);
+    right.n = inner.n - mid - 1;
+    System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.n);
+    System.arraycopy(inner.children, mid + 1, right.children, 0, right.n + 1);
+    System.arraycopy(inner.counts, mid + 1, right.counts, 0, right.n + 1);
+    int rightSize = 0;
+    for (int i = 0; i <= right.n; i++) {
+      rightSize += right.counts[i];
+    }
+    for (int i = mid; i < inner.n; i++) {
+      inner.keys[i] = null;
+      inner.children[i + 1] = null;
+      inner.counts[i + 1] = 0;
+    }
+    inner.n = mid;
+    return new Split(promoted, right, rightSize);
+  }
+
+  // delete the minimal entry from the tree
+  @Override
+  public void deleteMin() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("can not perform deleteMin in a empty tree");
+    }
+    delete(min());
+  }
+
+  // delete the maximal entry from the tree
+  @Override
+  public void deleteMax() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("can not perform deleteMax in a empty tree");
+    }
+    delete(max());
+  }
+
+  // delete the key-value pair w/i the given key, nothing happens if the key is not existed
+  @Override
+  public void delete(Key key) {
+    if (delete(root, key) && root instanceof Inner && root.n == 0) {
+      // the root lost its last key, the tree shrinks by one level
+      root = ((Inner) root).children[0];
+    }
+    assert check();
+  }
+
+  private boolean delete(Node node, Key key) {
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      int i = lowerBound(leaf, key);
+      if (i == leaf.n || key.compareTo(key(leaf.keys[i])) != 0) {
+        return false;
+      }
+      System.arraycopy(leaf.keys, i + 1, leaf.keys, i, leaf.n - i - 1);
+      System.arraycopy(leaf.values, i + 1, leaf.values, i, leaf.n - i - 1);
+      leaf.n--;
+      leaf.keys[leaf.n] = null;
+      leaf.values[leaf.n] = null;
+      size--;
+      return true;
+    }
+
+    Inner inner = (Inner) node;
+    int i = upperBound(inner, key);
+    if (!delete(inner.children[i], key)) {
+      return false;
+    }
+    inner.counts[i]--;
+    if (fill(inner.children[i]) < minFill) {
+      rebalance(inner, i);
+    }
+    return true;
+  }
+
+  // keys of a leaf, children of an inner node
+  private static int fill(Node node) {
+    return (node instanceof Leaf) ? node.n : node.n + 1;
+  }
+
+  // the child at index i is under filled, borrow from a sibling or merge w/ one
+  private void rebalance(Inner parent, int i) {
+    if (i > 0 && fill(parent.children[i - 1]) > minFill) {
+      borrowFromLeft(parent, i);
+    } else if (i < parent.n && fill(parent.children[i + 1]) > minFill) {
+      borrowFromRight(parent, i);
+    } else if (i > 0) {
+      merge(parent, i - 1);
+    } else {
+      merge(parent, i);
+    }
+  }
+
+  private void borrowFromLeft(Inner parent, int i) {
+    int moved;
+    if (parent.children[i] instanceof Leaf) {
+      Leaf left = (Leaf) parent.children[i - 1];
+      Leaf child = (Leaf) parent.children[i];
+      System.arraycopy(child.keys, 0, child.keys, 1, child.n);
+      System.arraycopy(child.values, 0, child.values, 1, child.n);
+      child.keys[0] = left.keys[left.n - 1];
+      child.values[0] = left.values[left.n - 1];
+      child.n++;
+      left.n--;
+      left.keys[left.n] = null;
+      left.values[left.n] = null;
+      parent.keys[i - 1] = child.keys[0];
+      moved = 1;
+    } else {
+      Inner left = (Inner) parent.children[i - 1];
+      Inner child = (Inner) parent.children[i];
+      System.arraycopy(child.keys, 0, child.keys, 1, child.n);
+      System.arraycopy(child.children, 0, child.children, 1, child.n + 1);
+      System.arraycopy(child.counts, 0, child.counts, 1, child.n + 1);
+      // the separator moves down, the last key of the left sibling moves up
+      child.keys[0] = parent.keys[i - 1];
+      child.children[0] = left.children[left.n];
+      child.counts[0] = left.counts[left.n];
+      child.n++;
+      moved = left.counts[left.n];
+      parent.keys[i - 1] = left.keys[left.n - 1];
+      left.keys[left.n - 1] = null;
+      left.children[left.n] = null;
+      left.counts[left.n] = 0;
+      left.n--;
+    }
+    parent.counts[i - 1] -= moved;
+    parent.counts[i] += moved;
+  }
+
+  private void borrowFromRight(Inner parent, int i) {
+    int moved;
+    if (parent.children[i] instanceof Leaf) {
+      Leaf child = (Leaf) parent.children[i];
+      Leaf right = (Leaf) parent.children[i + 1];
+      child.keys[child.n] = right.keys[0];
+      child.values[child.n] = right.values[0];
+      child.n++;
+      System.arraycopy(right.keys, 1, right.keys, 0, right.n - 1);
+      System.arraycopy(right.values, 1, right.values, 0, right.n - 1);
+      right.n--;
+      right.keys[right.n] = null;
+      right.values[right.n] = null;
+      parent.keys[i] = right.keys[0];
+      moved = 1;
+    } else {
+      Inner child = (Inner) parent.children[i];
+      Inner right = (Inner) parent.children[i + 1];
+      // the separator moves down, the first key of the right sibling moves up
+      child.keys[child.n] = parent.keys[i];
+      child.children[child.n + 1] = right.children[0];
+      child.counts[child.n + 1] = right.counts[0];
+      child.n++;
+      moved = right.counts[0];
+      parent.keys[i] = right.keys[0];
+      System.arraycopy(right.keys, 1, right.keys, 0, right.n - 1);
+      System.arraycopy(right.children, 1, right.children, 0, right.n);
+      System.arraycopy(right.counts, 1, right.counts, 0, right.n);
+      right.keys[right.n - 1] = null;
+      right.children[right.n] = null;
+      right.counts[right.n] = 0;
+      right.n--;
+    }
+    parent.counts[i] += moved;
+    parent.counts[i + 1] -= moved;
+  }
+
+  // merges the child at index j + 1 into the child at index j
+  private void merge(Inner parent, int j) {
+    if (parent.children[j] instanceof Leaf) {
+      Leaf left = (Leaf) parent.children[j];
+      Leaf right = (Leaf) parent.children[j + 1];
+      System.arraycopy(right.keys, 0, left.keys, left.n, right.n);
+      System.arraycopy(right.values, 0, left.values, left.n, right.n);
+      left.n += right.n;
+      left.next = right.next;
+      if (left.next != null) {
+        left.next.prev = left;
+      }
+    } else {
+      Inner left = (Inner) parent.children[j];
+      Inner right = (Inner) parent.children[j + 1];
+      left.keys[left.n] = parent.keys[j];
+      System.arraycopy(right.keys, 0, left.keys, left.n + 1, right.n);
+      System.arraycopy(right.children, 0, left.children, left.n + 1, right.n + 1);
+      System.arraycopy(right.counts, 0, left.counts, left.n + 1, right.n + 1);
+      left.n += right.n + 1;
+    }
+    parent.counts[j] += parent.counts[j + 1];
+    System.arraycopy(parent.keys, j + 1, parent.keys, j, parent.n - j - 1);
+    System.arraycopy(parent.children, j + 2, parent.children, j + 1, parent.n - j - 1);
+    System.arraycopy(parent.counts, j + 2, parent.counts, j + 1, parent.n - j - 1);
+    parent.keys[parent.n - 1] = null;
+    parent.children[parent.n] = null;
+    parent.counts[parent.n] = 0;
+    parent.n--;
+  }
+
+  // get the minimal key from the tree, null if the tree is empty
+  @Override
+  public Key min() {
+    Leaf leaf = firstLeaf();
+    return (leaf.n == 0) ? null : key(leaf.keys[0]);
+  }
+
+  // get the maximal key from the tree, null if the tree is empty
+  @Override
+  public Key max() {
+    Node node = root;
+    while (node instanceof Inner) {
+      node = ((Inner) node).children[node.n];
+    }
+    return (node.n == 0) ? null : key(node.keys[node.n - 1]);
+  }
+
+  // find the floor key (largest key in the tree less than or equal to key)
+  @Override
+  public Key floor(Key key) {
+    Leaf leaf = leafFor(key);
+    int i = upperBound(leaf, key) - 1;
+    if (i >= 0) {
+      return key(leaf.keys[i]);
+    }
+    // all the keys of the previous leaf are smaller
+    return (leaf.prev == null) ? null : key(leaf.prev.keys[leaf.prev.n - 1]);
+  }
+
+  // find the ceil key (smallest key in the tree larger than or equal to key)
+  @Override
+  public Key ceil(Key key) {
+    Leaf leaf = leafFor(key);
+    int i = lowerBound(leaf, key);
+    if (i < leaf.n) {
+      return key(leaf.keys[i]);
+    }
+    return (leaf.next == null) ? null : key(leaf.next.keys[0]);
+  }
+
+  // select the key that at rank index k, null if k is out of [0, size)
+  @Override
+  public Key select(int k) {
+    if (k < 0 || k >= size) {
+      return null;
+    }
+    Node node = root;
+    while (node instanceof Inner) {
+      Inner inner = (Inner) node;
+      int i = 0;
+      while (k >= inner.counts[i]) {
+        k -= inner.counts[i];
+        i++;
+      }
+      node = inner.children[i];
+    }
+    return key(node.keys[k]);
+  }
+
+  // get the number of key in the tree that smaller the given key
+  @Override
+  public int rank(Key key) {
+    int rank = 0;
+    Node node = root;
+    while (node instanceof Inner) {
+      Inner inner = (Inner) node;
+      int i = upperBound(inner, key);
+      for (int j = 0; j < i; j++) {
+        rank += inner.counts[j];
+      }
+      node = inner.children[i];
+    }
+    return rank + lowerBound(node, key);
+  }
+
+  // store all the keys in queue in ascending order
+  @Override
+  public HelloQueue<Key> keys() {
+    HelloQueue<Key> queue = new HelloQueue<Key>(null, Math.max(size, 1));
+    for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+      for (int i = 0; i < leaf.n; i++) {
+        queue.add(key(leaf.keys[i]));
+      }
+    }
+    return queue;
+  }
+
+  // store the keys in queue with two given keys lo & hi, the leaves are walked from lo on
+  @Override
+  public HelloQueue<Key> keys(Key lo, Key hi) {
+    HelloQueue<Key> queue = new HelloQueue<Key>(null);
+    if (lo.compareTo(hi) > 0) {
+      return queue;
+    }
+    Leaf leaf = leafFor(lo);
+    int i = lowerBound(leaf, lo);
+    while (leaf != null) {
+      for (; i < leaf.n; i++) {
+        Key key = key(leaf.keys[i]);
+        if (key.compareTo(hi) > 0) {
+          return queue;
+        }
+        queue.add(key);
+      }
+      leaf = leaf.next;
+      i = 0;
+    }
+    return queue;
+  }
+
+  // get the number of key between the two given key
+  @Override
+  public int size(Key lo, Key hi) {
+    if (lo.compareTo(hi) > 0) {
+      return 0;
+    }
+    if (contain(hi)) {
+      return rank(hi) - rank(lo) + 1;
+    } else {
+      return rank(hi) - rank(lo);
+    }
+  }
+
+  // get the height of the tree, the number of levels from the root to the leaves
+  public int height() {
+    int height = 1;
+    for (Node node = root; node instanceof Inner; node = ((Inner) node).children[0]) {
+      height++;
+    }
+    return height;
+  }
+
+  private Leaf leafFor(Key key) {
+    Node node = root;
+    while (node instanceof Inner) {
+      node = ((Inner) node).children[upperBound(node, key)];
+    }
+    return (Leaf) node;
+  }
+
+  private Leaf firstLeaf() {
+    Node node = root;
+    while (node instanceof Inner) {
+      node = ((Inner) node).children[0];
+    }
+    return (Leaf) node;
+  }
+
+  // the index of the first key that is >= key, node.n if there is none
+  private int lowerBound(Node node, Key key) {
+    int lo = 0;
+    int hi = node.n;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (key(node.keys[mid]).compareTo(key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  // the index of the first key that is > key, node.n if there is none
+  private int upperBound(Node node, Key key) {
+    int lo = 0;
+    int hi = node.n;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (key(node.keys[mid]).compareTo(key) <= 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Key key(Object key) {
+    return (Key) key;
+  }
+
+  // check the integrity of the B+tree
+  private boolean check() {
+    int leafDepth = height();
+    if (check(root, null, null, 1, leafDepth) != size) {
+      System.out.println("subtree # not consistent");
+      return false;
+    }
+    // the leaf chain visits every key once, in ascending order
+    int count = 0;
+    Key last = null;
+    Leaf prev = null;
+    for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+      if (leaf.prev != prev) {
+        System.out.println("leaf links not consistent");
+        return false;
+      }
+      for (int i = 0; i < leaf.n; i++) {
+        Key key = key(leaf.keys[i]);
+        if (last != null && last.compareTo(key) >= 0) {
+          System.out.println("Not int a symmetic order");
+          return false;
+        }
+        last = key;
+        count++;
+      }
+      prev = leaf;
+    }
+    return count == size;
+  }
+
+  // the number of keys below node, -1 if the subtree is broken. every key is in [lo, hi)
+  private int check(Node node, Key lo, Key hi, int depth, int leafDepth) {
+    if (node != root && fill(node) < minFill) {
+      System.out.println("node under filled");
+      return -1;
+    }
+    for (int i = 0; i < node.n; i++) {
+      Key key = key(node.keys[i]);
+      if ((lo != null && key.compareTo(lo) < 0) || (hi != null && key.compareTo(hi) >= 0)
+          || (i > 0 && key(node.keys[i - 1]).compareTo(key) >= 0)) {
+        System.out.println("Not int a symmetic order");
+        return -1;
+      }
+    }
+    if (node instanceof Leaf) {
+      return (depth == leafDepth) ? node.n : -1;
+    }
+    Inner inner = (Inner) node;
+    int total = 0;
+    for (int i = 0; i <= inner.n; i++) {
+      Key childLo = (i == 0) ? lo : key(inner.keys[i - 1]);
+      Key childHi = (i == inner.n) ? hi : key(inner.keys[i]);
+      int count = check(inner.children[i], childLo, childHi, depth + 1, leafDepth);
+      if (count < 0 || count != inner.counts[i]) {
+        return -1;
+      }
+      total += count;
+    }
+    return total;
+  }
+
+  public static void main(String[] args) {
+    BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(64);
+    int n = 1000000;
+    for (int i = 0; i < n; i++) {
+      tree.put(i, i * 2);
+    }
+    System.out.println("size: " + tree.size() + ", order: " + tree.order() + ", height: "
+        + tree.height());
+    System.out.println("rank of key 4242: " + tree.rank(4242) + ", key at rank 4242: "
+        + tree.select(4242));
+    System.out.println("keys in [500000, 500005]: " + tree.keys(500000, 500005));
+
+    for (int i = 0; i < n; i += 2) {
+      tree.delete(i);
+    }
+    System.out.println("after deleting the even keys, size: " + tree.size() + ", height: "
+        + tree.height() + ", floor of 10: " + tree.floor(10) + ", ceil of 10: " + tree.ceil(10));
+  }
+}
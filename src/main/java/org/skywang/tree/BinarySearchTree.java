@@ -1,12 +1,34 @@
 package org.skywang.tree;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.skywang.linear.HelloQueue;
+import org.skywang.linear.HelloStack;
 
 public class BinarySearchTree<Key extends Comparable<Key>, Value> {
+  // smaller parts of a stream are not split any further
+  private final static int MIN_SPLIT_SIZE = 1 << 6;
+  // check() is O(n^2), larger trees are not checked on every change
+  private final static int MAX_CHECKED_SIZE = 1 << 8;
+  // putAll() puts a batch smaller than 1/SMALL_BATCH_RATIO of the tree key by key
+  private final static int SMALL_BATCH_RATIO = 16;
+
   // root of binary search tree
   private BstNode root;
+  // number of modifications, the iterators fail fast when the tree changes under them
+  private int modCount;
 
   // binary search tree node structure
   private class BstNode {
@@ -73,41 +95,51 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
     this.root = null;
   }
 
-  // pre-order traversal the tree
+  // pre-order traversal the tree, w/ an explicit stack so a degenerate tree can not overflow the
+  // call stack
   public void preOrder() {
-    preOrder(root);
-  }
-
-  private void preOrder(BstNode node) {
-    if (node != null) {
+    HelloStack<BstNode> stack = new HelloStack<BstNode>(null);
+    if (root != null) {
+      stack.push(root);
+    }
+    while (!stack.isEmpty()) {
+      BstNode node = stack.pop();
       System.out.print(node.getKey() + ":" + node.getValue() + ", ");
-      preOrder(node.left);
-      preOrder(node.right);
+      if (node.right != null) {
+        stack.push(node.right);
+      }
+      if (node.left != null) {
+        stack.push(node.left);
+      }
     }
   }
 
   // in-order traversal the tree
   public void inOrder() {
-    inOrder(root);
-  }
-
-  private void inOrder(BstNode node) {
-    if (node != null) {
-      inOrder(node.left);
-      System.out.print(node.getKey() + ":" + node.getValue() + ", ");
-      inOrder(node.right);
+    for (Map.Entry<Key, Value> entry : entries()) {
+      System.out.print(entry.getKey() + ":" + entry.getValue() + ", ");
     }
   }
 
-  // post-order traversal the tree
+  // post-order traversal the tree, the reverse of a root-right-left pre-order
   public void postOrder() {
-    postOrder(root);
-  }
-
-  private void postOrder(BstNode node) {
-    if (node != null) {
-      postOrder(node.left);
-      postOrder(node.right);
+    HelloStack<BstNode> stack = new HelloStack<BstNode>(null);
+    HelloStack<BstNode> output = new HelloStack<BstNode>(null);
+    if (root != null) {
+      stack.push(root);
+    }
+    while (!stack.isEmpty()) {
+      BstNode node = stack.pop();
+      output.push(node);
+      if (node.left != null) {
+        stack.push(node.left);
+      }
+      if (node.right != null) {
+        stack.push(node.right);
+      }
+    }
+    while (!output.isEmpty()) {
+      BstNode node = output.pop();
       System.out.print(node.getKey() + ":" + node.getValue() + ", ");
     }
   }
@@ -136,48 +168,225 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
   }
 
   // return the associated value of the given key. null if the given key is not existed
+  // the lookups descend w/ a loop like rank(), so a degenerate tree can not overflow the call stack
   public Value get(Key key) {
-    return get(root, key);
-  }
-
-  private Value get(BstNode node, Key key) {
-    if (node == null) {
-      return null;
-    }
-
-    int cmp = node.key.compareTo(key);
-    if (cmp > 0) {
-      return get(node.left, key);
-    } else if (cmp < 0) {
-      return get(node.right, key);
-    } else {
-      return node.getValue();
+    BstNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        node = node.right;
+      } else {
+        return node.getValue();
+      }
     }
+    return null;
   }
 
   // put the key-value pair into the tree, if key is already exists, update the value
+  // iterative like get(), so putAll() of a small batch is safe on a degenerate tree as well
   public void put(Key key, Value value) {
     if (value == null) {
       delete(key);
       return;
     }
-    root = put(root, key, value);
-    assert check();
+    if (root == null) {
+      root = new BstNode(key, value, 1);
+    } else if (!replace(key, value)) {
+      // a new leaf, every node on the path to it roots one more node
+      BstNode parent = null;
+      BstNode node = root;
+      int cmp = 0;
+      while (node != null) {
+        node.numNode++;
+        parent = node;
+        cmp = key.compareTo(node.key);
+        node = (cmp < 0) ? node.left : node.right;
+      }
+      if (cmp < 0) {
+        parent.left = new BstNode(key, value, 1);
+      } else {
+        parent.right = new BstNode(key, value, 1);
+      }
+    }
+    modCount++;
+    assert size() > MAX_CHECKED_SIZE || check();
   }
 
-  private BstNode put(BstNode node, Key key, Value value) {
-    if (node == null) {
-      return new BstNode(key, value, 1);
+  // sets the value of an existing key, false if the key is not existed
+  private boolean replace(Key key, Value value) {
+    BstNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        node = node.right;
+      } else {
+        node.value = value;
+        return true;
+      }
     }
-    int cmp = node.key.compareTo(key);
-    if (cmp > 0) {
-      node.left = put(node.getLeft(), key, value);
-    } else if (cmp < 0) {
-      node.right = put(node.getRight(), key, value);
-    } else {
-      node.value = value;
+    return false;
+  }
+
+  /**
+   * builds a perfectly balanced tree from keys in strictly ascending order in O(n), the middle
+   * key of every range becomes the root of its subtree. values[i] is the value of keys[i].
+   */
+  public static <Key extends Comparable<Key>, Value> BinarySearchTree<Key, Value> fromSorted(
+      Key[] keys, Value[] values) {
+    BinarySearchTree<Key, Value> tree = new BinarySearchTree<Key, Value>();
+    tree.putAll(keys, values);
+    return tree;
+  }
+
+  /**
+   * puts a batch of keys in strictly ascending order, a key that already exists gets the new
+   * value. the batch is merged w/ the in-order nodes of the tree and the result is linked into a
+   * perfectly balanced tree, O(n + m) in total, so it pays off for large batches only.
+   * a batch much smaller than the tree is put key by key instead, O(m * height), and the shape of
+   * the tree is kept.
+   */
+  public void putAll(Key[] keys, Value[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException(
+          "keys & values differ in length: " + keys.length + " != " + values.length);
     }
-    node.setNumNode(1 + size(node.getLeft()) + size(node.getRight()));
+    for (int i = 0; i < keys.length; i++) {
+      if (values[i] == null) {
+        throw new IllegalArgumentException("null value at index " + i);
+      }
+      if (i > 0 && keys[i - 1].compareTo(keys[i]) >= 0) {
+        throw new IllegalArgumentException(
+            "keys are not in strictly ascending order at index " + i);
+      }
+    }
+
+    if ((long) keys.length * SMALL_BATCH_RATIO < size()) {
+      for (int i = 0; i < keys.length; i++) {
+        put(keys[i], values[i]);
+      }
+      return;
+    }
+
+    List<BstNode> existing = inOrderNodes();
+    List<BstNode> merged = new ArrayList<BstNode>(existing.size() + keys.length);
+    int i = 0;
+    int j = 0;
+    while (i < existing.size() || j < keys.length) {
+      if (j == keys.length) {
+        merged.add(existing.get(i++));
+      } else if (i == existing.size()) {
+        merged.add(new BstNode(keys[j], values[j], 1));
+        j++;
+      } else {
+        int cmp = existing.get(i).key.compareTo(keys[j]);
+        if (cmp < 0) {
+          merged.add(existing.get(i++));
+        } else if (cmp > 0) {
+          merged.add(new BstNode(keys[j], values[j], 1));
+          j++;
+        } else {
+          BstNode node = existing.get(i++);
+          node.value = values[j++];
+          merged.add(node);
+        }
+      }
+    }
+    root = link(merged, 0, merged.size() - 1);
+    modCount++;
+    assert size() > MAX_CHECKED_SIZE || check();
+  }
+
+  /**
+   * rebuilds the tree in place w/ the Day-Stout-Warren algorithm, O(n) time & O(1) extra space
+   * (1) right rotations turn the tree into a vine, a linked list along the right links
+   * (2) left rotations of every other vine node fold it into a complete tree of floor(lg n) + 1
+   * levels, the bottom level is filled first
+   * a pseudo root above the real one lets the rotations at the top work like any other.
+   */
+  public void rebalance() {
+    BstNode pseudoRoot = new BstNode(null, null, 0);
+    pseudoRoot.right = root;
+    int n = treeToVine(pseudoRoot);
+    // the number of nodes in the largest perfect tree w/i n nodes
+    int perfect = Integer.highestOneBit(n + 1) - 1;
+    compress(pseudoRoot, n - perfect);
+    for (int m = perfect / 2; m > 0; m /= 2) {
+      compress(pseudoRoot, m);
+    }
+    root = pseudoRoot.right;
+    modCount++;
+    assert size() > MAX_CHECKED_SIZE || check();
+  }
+
+  // rotates right below the pseudo root until no node has a left child, returns the # of nodes
+  private int treeToVine(BstNode pseudoRoot) {
+    int n = 0;
+    BstNode tail = pseudoRoot;
+    BstNode rest = tail.right;
+    while (rest != null) {
+      if (rest.left == null) {
+        tail = rest;
+        rest = rest.right;
+        n++;
+      } else {
+        BstNode left = rest.left;
+        rest.left = left.right;
+        left.right = rest;
+        rest = left;
+        tail.right = left;
+      }
+    }
+    // every vine node roots the nodes after it
+    int numNode = n;
+    for (BstNode node = pseudoRoot.right; node != null; node = node.right) {
+      node.setNumNode(numNode--);
+    }
+    return n;
+  }
+
+  // rotates left the first count odd nodes of the right spine, each rotation halves a vine piece
+  private void compress(BstNode pseudoRoot, int count) {
+    BstNode scanner = pseudoRoot;
+    for (int i = 0; i < count; i++) {
+      BstNode child = scanner.right;
+      BstNode parent = child.right;
+      scanner.right = parent;
+      child.right = parent.left;
+      parent.left = child;
+      // the parent roots the same nodes as the child did before
+      parent.setNumNode(child.getNumNode());
+      child.setNumNode(1 + size(child.left) + size(child.right));
+      scanner = parent;
+    }
+  }
+
+  // the nodes in ascending key order
+  private List<BstNode> inOrderNodes() {
+    List<BstNode> nodes = new ArrayList<BstNode>(size());
+    HelloStack<BstNode> stack = new HelloStack<BstNode>(null);
+    for (BstNode node = root; node != null; node = node.left) {
+      stack.push(node);
+    }
+    while (!stack.isEmpty()) {
+      nodes.add(nextInOrder(stack));
+    }
+    return nodes;
+  }
+
+  // links nodes[lo..hi] into a perfectly balanced subtree, the recursion is only lg n deep
+  private BstNode link(List<BstNode> nodes, int lo, int hi) {
+    if (lo > hi) {
+      return null;
+    }
+    int mid = (lo + hi) >>> 1;
+    BstNode node = nodes.get(mid);
+    node.left = link(nodes, lo, mid - 1);
+    node.right = link(nodes, mid + 1, hi);
+    node.setNumNode(hi - lo + 1);
     return node;
   }
 
@@ -187,7 +396,8 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
       throw new NoSuchElementException("can not perform deleteMin in a empty tree");
     }
     root = deleteMin(root);
-    assert check();
+    modCount++;
+    assert size() > MAX_CHECKED_SIZE || check();
   }
 
   private BstNode deleteMin(BstNode node) {
@@ -205,7 +415,8 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
       throw new NoSuchElementException("can not perform deleteMax in a empty tree");
     }
     root = deleteMax(root);
-    assert check();
+    modCount++;
+    assert size() > MAX_CHECKED_SIZE || check();
   }
 
   private BstNode deleteMax(BstNode node) {
@@ -220,7 +431,8 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
   // delete a key-value pair from the subtree at given root node
   public void delete(Key key) {
     root = delete(root, key);
-    assert check();
+    modCount++;
+    assert size() > MAX_CHECKED_SIZE || check();
   }
 
   private BstNode delete(BstNode node, Key key) {
@@ -281,120 +493,300 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 
   // find the floor node (largest node in BST tree less than or equal to key)
   public BstNode floor(Key key) {
-    return floor(root, key);
-  }
-
-  private BstNode floor(BstNode node, Key key) {
-    if (node == null) {
-      return null;
-    }
-    int cmp = key.compareTo(node.getKey());
-    if (cmp < 0) {
-      return floor(node.getLeft(), key);
-    } else if (cmp > 0) {
-      BstNode temp = floor(node.getRight(), key);
-      if (temp == null) {
-        return node;
+    // the last node passed on the right is the best candidate so far
+    BstNode floor = null;
+    BstNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.getKey());
+      if (cmp < 0) {
+        node = node.getLeft();
+      } else if (cmp > 0) {
+        floor = node;
+        node = node.getRight();
       } else {
-        return temp;
+        return node;
       }
-    } else {
-      return node;
     }
+    return floor;
   }
 
   // find the ceil node (smallest node in BST tree larger than or equal to key)
   public BstNode ceil(Key key) {
-    return ceil(root, key);
-  }
-
-  private BstNode ceil(BstNode node, Key key) {
-    if (node == null) {
-      return null;
-    }
-    int cmp = key.compareTo(node.getKey());
-    if (cmp > 0) {
-      return ceil(node.right, key);
-    } else if (cmp < 0) {
-      BstNode temp = ceil(node.left, key);
-      if (temp == null) {
-        return node;
+    // the last node passed on the left is the best candidate so far
+    BstNode ceil = null;
+    BstNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.getKey());
+      if (cmp > 0) {
+        node = node.right;
+      } else if (cmp < 0) {
+        ceil = node;
+        node = node.left;
       } else {
-        return temp;
+        return node;
       }
-    } else {
-      return node;
     }
+    return ceil;
   }
 
   // select the node that at rank index k
   public BstNode select(int k) {
-    if (k < 0 || k > size()) {
-      return null;
-    }
-    return select(root, k);
-  }
-
-  private BstNode select(BstNode node, int k) {
-    if (node == null) {
+    if (k < 0 || k >= size()) {
       return null;
     }
-
-    int leftNum = size(node.left);
-    if (leftNum > k) {
-      return select(node.left, k);
-    } else if (leftNum < k) {
-      return select(node.right, (k - leftNum - 1));
-    } else {
-      return node;
+    BstNode node = root;
+    while (node != null) {
+      int leftNum = size(node.left);
+      if (leftNum > k) {
+        node = node.left;
+      } else if (leftNum < k) {
+        k -= leftNum + 1;
+        node = node.right;
+      } else {
+        return node;
+      }
     }
+    return null;
   }
 
   // get the number of key in the tree that smaller the given key
   public int rank(Key key) {
-    return rank(root, key);
-  }
-
-  private int rank(BstNode node, Key key) {
-    if (node == null) {
-      return 0;
-    }
-    int cmp = key.compareTo(node.key);
-    if (cmp > 0) {
-      return (1 + size(node.left) + rank(node.right, key));
-    } else if (cmp < 0) {
-      return rank(node.left, key);
-    } else {
-      return size(node.left);
+    int rank = 0;
+    BstNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp > 0) {
+        rank += 1 + size(node.left);
+        node = node.right;
+      } else if (cmp < 0) {
+        node = node.left;
+      } else {
+        return rank + size(node.left);
+      }
     }
+    return rank;
   }
 
   // store the keys in queue with two given keys lo & hi
   public HelloQueue<Key> keys() {
+    if (isEmpty()) {
+      return new HelloQueue<Key>(null);
+    }
     return keys(min().key, max().key);
   }
 
   public HelloQueue<Key> keys(Key lo, Key hi) {
     HelloQueue<Key> queue = new HelloQueue<Key>(null);
-    keys(root, queue, lo, hi);
+    for (Key key : range(lo, hi)) {
+      queue.add(key);
+    }
     return queue;
   }
 
-  private void keys(BstNode node, HelloQueue<Key> queue, Key lo, Key hi) {
-    if (node == null) {
-      return;
+  /**
+   * the keys in [lo, hi] in ascending order, found lazily while iterating. the first key is
+   * reached in O(height), and the iterator holds at most one node per level no matter how long
+   * the range is.
+   */
+  public Iterable<Key> range(final Key lo, final Key hi) {
+    return new Iterable<Key>() {
+      @Override
+      public Iterator<Key> iterator() {
+        return new RangeIterator<Key>(lo, hi) {
+          @Override
+          Key valueOf(BstNode node) {
+            return node.key;
+          }
+        };
+      }
+    };
+  }
+
+  // the key-value pairs in [lo, hi] in ascending order, found lazily like range()
+  public Iterable<Map.Entry<Key, Value>> entries(final Key lo, final Key hi) {
+    return new Iterable<Map.Entry<Key, Value>>() {
+      @Override
+      public Iterator<Map.Entry<Key, Value>> iterator() {
+        return new RangeIterator<Map.Entry<Key, Value>>(lo, hi) {
+          @Override
+          Map.Entry<Key, Value> valueOf(BstNode node) {
+            return new AbstractMap.SimpleImmutableEntry<Key, Value>(node.key, node.value);
+          }
+        };
+      }
+    };
+  }
+
+  // all the key-value pairs in ascending order
+  public Iterable<Map.Entry<Key, Value>> entries() {
+    if (isEmpty()) {
+      return Collections.<Map.Entry<Key, Value>>emptyList();
+    }
+    return entries(min().key, max().key);
+  }
+
+  /**
+   * in-order iteration w/ an explicit stack. the stack holds the nodes whose left subtree is
+   * either done or out of the range, the top is the next node to return.
+   * the tree must not be changed while iterating, the iterator fails fast if it is.
+   */
+  private abstract class RangeIterator<T> implements Iterator<T> {
+    private final HelloStack<BstNode> stack = new HelloStack<BstNode>(null);
+    private final Key hi;
+    private final int expectedModCount = modCount;
+
+    RangeIterator(Key lo, Key hi) {
+      this.hi = hi;
+      // the path to lo, skipping the nodes (and their left subtrees) below lo
+      BstNode node = root;
+      while (node != null) {
+        int cmp = lo.compareTo(node.key);
+        if (cmp < 0) {
+          stack.push(node);
+          node = node.left;
+        } else if (cmp > 0) {
+          node = node.right;
+        } else {
+          stack.push(node);
+          break;
+        }
+      }
     }
-    int cmplo = lo.compareTo(node.key);
-    int cmphi = hi.compareTo(node.key);
-    if (cmplo < 0) {
-      keys(node.left, queue, lo, hi);
+
+    abstract T valueOf(BstNode node);
+
+    @Override
+    public boolean hasNext() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      return !stack.isEmpty() && stack.peek().key.compareTo(hi) <= 0;
     }
-    if (cmplo <= 0 && cmphi >= 0) {
-      queue.add(node.key);
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return valueOf(nextInOrder(stack));
     }
-    if (cmphi > 0) {
-      keys(node.right, queue, lo, hi);
+  }
+
+  // pops the next node of an in-order walk and pushes the left spine of its right subtree
+  private BstNode nextInOrder(HelloStack<BstNode> stack) {
+    BstNode node = stack.pop();
+    for (BstNode child = node.right; child != null; child = child.left) {
+      stack.push(child);
     }
+    return node;
+  }
+
+  // the key-value pairs in [lo, hi] in ascending order as a sequential stream
+  public Stream<Map.Entry<Key, Value>> stream(Key lo, Key hi) {
+    return StreamSupport.stream(spliterator(lo, hi), false);
+  }
+
+  // the key-value pairs in [lo, hi] as a parallel stream, split into halves of equal size
+  public Stream<Map.Entry<Key, Value>> parallelStream(Key lo, Key hi) {
+    return StreamSupport.stream(spliterator(lo, hi), true);
+  }
+
+  // a SIZED & SUBSIZED spliterator over the key-value pairs in [lo, hi], see RankSpliterator
+  // both bounds are found by iterative descents, hi itself counts if it is in the tree
+  public Spliterator<Map.Entry<Key, Value>> spliterator(Key lo, Key hi) {
+    int from = rank(lo);
+    if (lo.compareTo(hi) > 0) {
+      return new RankSpliterator(from, from);
+    }
+    int to = rank(hi) + (contain(hi) ? 1 : 0);
+    return new RankSpliterator(from, to);
+  }
+
+  /**
+   * a spliterator over the nodes of rank [from, to). the numNode fields make the number of nodes
+   * in a rank range exact, so a split cuts the range in two halves of known size, even in a
+   * degenerate tree where splitting at the root would leave one side empty.
+   * a part finds its first node w/ a descent by rank, then walks in-order w/ an explicit stack.
+   * the tree must not be changed while a stream is running, it fails fast if it is.
+   */
+  private class RankSpliterator implements Spliterator<Map.Entry<Key, Value>> {
+    private int from;
+    private final int to;
+    private final int expectedModCount = modCount;
+    // null until the first node is taken, a started part is not split anymore
+    private HelloStack<BstNode> stack;
+
+    RankSpliterator(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Map.Entry<Key, Value>> action) {
+      if (action == null) {
+        throw new NullPointerException();
+      }
+      if (from >= to) {
+        return false;
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (stack == null) {
+        stack = pathToRank(from);
+      }
+      BstNode node = nextInOrder(stack);
+      from++;
+      action.accept(new AbstractMap.SimpleImmutableEntry<Key, Value>(node.key, node.value));
+      return true;
+    }
+
+    @Override
+    public Spliterator<Map.Entry<Key, Value>> trySplit() {
+      if (stack != null || to - from < MIN_SPLIT_SIZE) {
+        return null;
+      }
+      int mid = (from + to) >>> 1;
+      RankSpliterator prefix = new RankSpliterator(from, mid);
+      from = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED | DISTINCT | NONNULL | SORTED | SIZED | SUBSIZED;
+    }
+
+    // the entries come in the natural order of their keys, like those of a TreeMap
+    @Override
+    public Comparator<? super Map.Entry<Key, Value>> getComparator() {
+      return Map.Entry.<Key, Value>comparingByKey();
+    }
+  }
+
+  // the in-order stack positioned at the node of rank k, the nodes w/ a smaller rank are skipped
+  private HelloStack<BstNode> pathToRank(int k) {
+    HelloStack<BstNode> stack = new HelloStack<BstNode>(null);
+    BstNode node = root;
+    while (node != null) {
+      int leftNum = size(node.left);
+      if (k < leftNum) {
+        stack.push(node);
+        node = node.left;
+      } else if (k > leftNum) {
+        k -= leftNum + 1;
+        node = node.right;
+      } else {
+        stack.push(node);
+        break;
+      }
+    }
+    return stack;
   }
 
   // get the number of node between the two given key
@@ -409,16 +801,28 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
     }
   }
 
-  // get the height of the binary search tree
+  // get the height of the binary search tree, the number of levels, level by level w/o recursion
   public int height() {
-    return height(root);
-  }
-
-  private int height(BstNode node) {
-    if (node == null) {
-      return 0;
+    int height = 0;
+    HelloStack<BstNode> level = new HelloStack<BstNode>(null);
+    if (root != null) {
+      level.push(root);
+    }
+    while (!level.isEmpty()) {
+      height++;
+      HelloStack<BstNode> next = new HelloStack<BstNode>(null);
+      while (!level.isEmpty()) {
+        BstNode node = level.pop();
+        if (node.left != null) {
+          next.push(node.left);
+        }
+        if (node.right != null) {
+          next.push(node.right);
+        }
+      }
+      level = next;
     }
-    return Math.max(height(node.left), height(node.right));
+    return height;
   }
 
   // check the integrity of the binary search tree
@@ -503,5 +907,15 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
     tree.postOrder();
     System.out.println("\n");
 
+    System.out.println("keys in [D, M]...");
+    for (String key : tree.range("D", "M")) {
+      System.out.print(key + ", ");
+    }
+    System.out.println("\n");
+    System.out.println("height: " + tree.height());
+    System.out.println("# of keys in [D, M] counted by a parallel stream: "
+        + tree.parallelStream("D", "M").count());
+    tree.rebalance();
+    System.out.println("height after rebalance: " + tree.height());
   }
 }
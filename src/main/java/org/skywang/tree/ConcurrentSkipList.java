@@ -0,0 +1,438 @@
+package org.skywang.tree;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.skywang.linear.HelloQueue;
+
+/**
+ * a concurrent ordered symbol table, a lazy skip list w/ the api of BinarySearchTree
+ * (1) every node is linked into the levels 0..topLevel, the top level is random w/ p = 1/2, so a
+ * search skips over ~half of the remaining nodes on every level, O(log n) expected
+ * (2) reads never lock: get, floor, ceil & keys walk the links and only report the nodes that are
+ * fully linked and not marked as deleted
+ * (3) put & delete lock the predecessors of the node on every level it spans, validate that
+ * nothing changed since the lock free search and link (or unlink) the node, so writers to
+ * different parts of the list do not contend
+ *
+ * delete marks the node first (logical delete) and unlinks it afterwards, a reader that reaches a
+ * marked node treats it as absent. the locks are taken in descending key order, which rules out
+ * deadlocks between writers.
+ *
+ * there are no subtree sizes to maintain under concurrency, rank() & select() walk the bottom
+ * level. like keys(lo, hi) they are weakly consistent: they reflect the writes that completed
+ * before the walk passed the affected keys.
+ */
+public class ConcurrentSkipList<Key extends Comparable<Key>, Value>
+    implements OrderedSymbolTable<Key, Value> {
+  private final static int MAX_LEVEL = 32;
+
+  // sentinel in front of the smallest key, it spans all the levels
+  private final SlNode<Key, Value> head = new SlNode<Key, Value>(null, null, MAX_LEVEL - 1);
+  private final LongAdder size = new LongAdder();
+
+  // skip list node structure
+  private static final class SlNode<Key, Value> {
+    private final Key key;
+    private volatile Value value;
+    // next[i] is the successor on level i, null at the end of the level
+    private final AtomicReferenceArray<SlNode<Key, Value>> next;
+    private final int topLevel;
+    private final ReentrantLock lock = new ReentrantLock();
+    // logically deleted, the node is unlinked later under the locks of its predecessors
+    private volatile boolean marked;
+    // linked into all of its levels, only then it is visible to readers
+    private volatile boolean fullyLinked;
+
+    SlNode(Key key, Value value, int topLevel) {
+      this.key = key;
+      this.value = value;
+      this.topLevel = topLevel;
+      this.next = new AtomicReferenceArray<SlNode<Key, Value>>(topLevel + 1);
+    }
+
+    boolean isLive() {
+      return fullyLinked && !marked;
+    }
+  }
+
+  public ConcurrentSkipList() {
+    head.fullyLinked = true;
+  }
+
+  // get size (node #) of the list, a moment-in-time value only when there are no writers
+  @Override
+  public int size() {
+    return (int) size.sum();
+  }
+
+  // is the list empty
+  @Override
+  public boolean isEmpty() {
+    return firstLive() == null;
+  }
+
+  // does the list contain key-value pair w/i the given key
+  @Override
+  public boolean contain(Key key) {
+    return get(key) != null;
+  }
+
+  // return the associated value of the given key. null if the given key is not existed
+  @Override
+  public Value get(Key key) {
+    SlNode<Key, Value> pred = head;
+    for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+      SlNode<Key, Value> curr = pred.next.get(level);
+      while (curr != null) {
+        int cmp = key.compareTo(curr.key);
+        if (cmp > 0) {
+          pred = curr;
+          curr = pred.next.get(level);
+        } else if (cmp == 0) {
+          return curr.isLive() ? curr.value : null;
+        } else {
+          break;
+        }
+      }
+    }
+    return null;
+  }
+
+  // put the key-value pair into the list, if key is already exists, update the value
+  @SuppressWarnings("unchecked")
+  @Override
+  public void put(Key key, Value value) {
+    if (value == null) {
+      delete(key);
+      return;
+    }
+    int topLevel = randomLevel();
+    SlNode<Key, Value>[] preds = new SlNode[MAX_LEVEL];
+    SlNode<Key, Value>[] succs = new SlNode[MAX_LEVEL];
+    while (true) {
+      int found = find(key, preds, succs);
+      if (found != -1) {
+        SlNode<Key, Value> node = succs[found];
+        if (!node.marked) {
+          while (!node.fullyLinked) {
+            // another put is linking the node right now
+            Thread.yield();
+          }
+          node.lock.lock();
+          try {
+            if (!node.marked) {
+              node.value = value;
+              return;
+            }
+          } finally {
+            node.lock.unlock();
+          }
+        }
+        // being deleted, retry once it is unlinked
+        continue;
+      }
+
+      int highestLocked = -1;
+      try {
+        boolean valid = true;
+        for (int level = 0; valid && level <= topLevel; level++) {
+          SlNode<Key, Value> pred = preds[level];
+          SlNode<Key, Value> succ = succs[level];
+          pred.lock.lock();
+          highestLocked = level;
+          valid = !pred.marked && (succ == null || !succ.marked) && pred.next.get(level) == succ;
+        }
+        if (!valid) {
+          continue;
+        }
+        SlNode<Key, Value> node = new SlNode<Key, Value>(key, value, topLevel);
+        for (int level = 0; level <= topLevel; level++) {
+          node.next.set(level, succs[level]);
+        }
+        for (int level = 0; level <= topLevel; level++) {
+          preds[level].next.set(level, node);
+        }
+        node.fullyLinked = true;
+        size.increment();
+        return;
+      } finally {
+        for (int level = 0; level <= highestLocked; level++) {
+          preds[level].lock.unlock();
+        }
+      }
+    }
+  }
+
+  // delete the minimal key from the list
+  @Override
+  public void deleteMin() {
+    while (true) {
+      Key min = min();
+      if (min == null) {
+        throw new NoSuchElementException("can not perform deleteMin in a empty list");
+      }
+      if (remove(min)) {
+        return;
+      }
+    }
+  }
+
+  // delete the maximal key from the list
+  @Override
+  public void deleteMax() {
+    while (true) {
+      Key max = max();
+      if (max == null) {
+        throw new NoSuchElementException("can not perform deleteMax in a empty list");
+      }
+      if (remove(max)) {
+        return;
+      }
+    }
+  }
+
+  // delete the key-value pair w/i the given key, nothing happens if the key is not existed
+  @Override
+  public void delete(Key key) {
+    remove(key);
+  }
+
+  // false if the key is not existed or another thread deleted it first
+  @SuppressWarnings("unchecked")
+  private boolean remove(Key key) {
+    SlNode<Key, Value>[] preds = new SlNode[MAX_LEVEL];
+    SlNode<Key, Value>[] succs = new SlNode[MAX_LEVEL];
+    SlNode<Key, Value> victim = null;
+    boolean isMarked = false;
+    while (true) {
+      int found = find(key, preds, succs);
+      if (!isMarked) {
+        if (found == -1) {
+          return false;
+        }
+        victim = succs[found];
+        // a node found below its top level is still being linked (or unlinked)
+        if (!victim.fullyLinked || victim.topLevel != found || victim.marked) {
+          return false;
+        }
+        victim.lock.lock();
+        if (victim.marked) {
+          victim.lock.unlock();
+          return false;
+        }
+        victim.marked = true;
+        isMarked = true;
+      }
+
+      int highestLocked = -1;
+      try {
+        boolean valid = true;
+        for (int level = 0; valid && level <= victim.topLevel; level++) {
+          SlNode<Key, Value> pred = preds[level];
+          pred.lock.lock();
+          highestLocked = level;
+          valid = !pred.marked && pred.next.get(level) == victim;
+        }
+        if (!valid) {
+          // the victim stays marked & locked, search the predecessors again
+          continue;
+        }
+        for (int level = victim.topLevel; level >= 0; level--) {
+          preds[level].next.set(level, victim.next.get(level));
+        }
+        victim.lock.unlock();
+        size.decrement();
+        return true;
+      } finally {
+        for (int level = 0; level <= highestLocked; level++) {
+          preds[level].lock.unlock();
+        }
+      }
+    }
+  }
+
+  // the predecessors & successors of the key on every level, the highest level the key was
+  // found on, -1 if it was not found
+  private int find(Key key, SlNode<Key, Value>[] preds, SlNode<Key, Value>[] succs) {
+    int found = -1;
+    SlNode<Key, Value> pred = head;
+    for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+      SlNode<Key, Value> curr = pred.next.get(level);
+      while (curr != null && curr.key.compareTo(key) < 0) {
+        pred = curr;
+        curr = pred.next.get(level);
+      }
+      if (found == -1 && curr != null && curr.key.compareTo(key) == 0) {
+        found = level;
+      }
+      preds[level] = pred;
+      succs[level] = curr;
+    }
+    return found;
+  }
+
+  // the last node w/ a key < key (or <= key if inclusive), head if there is none
+  private SlNode<Key, Value> findLast(Key key, boolean inclusive) {
+    SlNode<Key, Value> pred = head;
+    for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+      SlNode<Key, Value> curr = pred.next.get(level);
+      while (curr != null && (key == null || isBefore(curr.key, key, inclusive))) {
+        pred = curr;
+        curr = pred.next.get(level);
+      }
+    }
+    return pred;
+  }
+
+  private boolean isBefore(Key a, Key b, boolean inclusive) {
+    int cmp = a.compareTo(b);
+    return inclusive ? cmp <= 0 : cmp < 0;
+  }
+
+  // the last live node w/ a key < key (or <= key), a null key stands for +infinity
+  private SlNode<Key, Value> findLastLive(Key key, boolean inclusive) {
+    while (true) {
+      SlNode<Key, Value> node = findLast(key, inclusive);
+      if (node == head || node.isLive()) {
+        return node;
+      }
+      // there are no back links, search again right in front of the dead node
+      key = node.key;
+      inclusive = false;
+    }
+  }
+
+  // the first live node on the bottom level starting at node
+  private SlNode<Key, Value> skipDead(SlNode<Key, Value> node) {
+    while (node != null && !node.isLive()) {
+      node = node.next.get(0);
+    }
+    return node;
+  }
+
+  private SlNode<Key, Value> firstLive() {
+    return skipDead(head.next.get(0));
+  }
+
+  // geometric w/ p = 1/2, 0 for half of the nodes
+  private static int randomLevel() {
+    int random = ThreadLocalRandom.current().nextInt();
+    return Math.min(Integer.numberOfTrailingZeros(random), MAX_LEVEL - 1);
+  }
+
+  // get the minimal key from the list, null if the list is empty
+  @Override
+  public Key min() {
+    SlNode<Key, Value> node = firstLive();
+    return (node == null) ? null : node.key;
+  }
+
+  // get the maximal key from the list, null if the list is empty
+  @Override
+  public Key max() {
+    SlNode<Key, Value> node = findLastLive(null, true);
+    return (node == head) ? null : node.key;
+  }
+
+  // find the floor key (largest key in the list less than or equal to key)
+  @Override
+  public Key floor(Key key) {
+    SlNode<Key, Value> node = findLastLive(key, true);
+    return (node == head) ? null : node.key;
+  }
+
+  // find the ceil key (smallest key in the list larger than or equal to key)
+  @Override
+  public Key ceil(Key key) {
+    SlNode<Key, Value> node = skipDead(findLast(key, false).next.get(0));
+    return (node == null) ? null : node.key;
+  }
+
+  // select the key that at rank index k, null if k is out of [0, size)
+  @Override
+  public Key select(int k) {
+    if (k < 0) {
+      return null;
+    }
+    for (SlNode<Key, Value> node = firstLive(); node != null; node = skipDead(node.next.get(0))) {
+      if (k-- == 0) {
+        return node.key;
+      }
+    }
+    return null;
+  }
+
+  // get the number of key in the list that smaller the given key
+  @Override
+  public int rank(Key key) {
+    int rank = 0;
+    for (SlNode<Key, Value> node = firstLive(); node != null && node.key.compareTo(key) < 0;
+        node = skipDead(node.next.get(0))) {
+      rank++;
+    }
+    return rank;
+  }
+
+  // store all the keys in queue in ascending order
+  @Override
+  public HelloQueue<Key> keys() {
+    HelloQueue<Key> queue = new HelloQueue<Key>(null);
+    for (SlNode<Key, Value> node = firstLive(); node != null; node = skipDead(node.next.get(0))) {
+      queue.add(node.key);
+    }
+    return queue;
+  }
+
+  // store the keys in queue with two given keys lo & hi
+  @Override
+  public HelloQueue<Key> keys(Key lo, Key hi) {
+    HelloQueue<Key> queue = new HelloQueue<Key>(null);
+    for (SlNode<Key, Value> node = skipDead(findLast(lo, false).next.get(0));
+        node != null && node.key.compareTo(hi) <= 0; node = skipDead(node.next.get(0))) {
+      queue.add(node.key);
+    }
+    return queue;
+  }
+
+  // get the number of key between the two given key
+  @Override
+  public int size(Key lo, Key hi) {
+    int count = 0;
+    for (SlNode<Key, Value> node = skipDead(findLast(lo, false).next.get(0));
+        node != null && node.key.compareTo(hi) <= 0; node = skipDead(node.next.get(0))) {
+      count++;
+    }
+    return count;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    final ConcurrentSkipList<Integer, String> list = new ConcurrentSkipList<Integer, String>();
+    Thread[] writers = new Thread[4];
+    for (int t = 0; t < writers.length; t++) {
+      final int offset = t;
+      writers[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = offset; i < 100000; i += 4) {
+            list.put(i, "v" + i);
+          }
+        }
+      });
+      writers[t].start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    System.out.println("size: " + list.size() + ", min: " + list.min() + ", max: " + list.max());
+    for (int i = 0; i < 100000; i += 2) {
+      list.delete(i);
+    }
+    System.out.println("after deleting the even keys, size: " + list.size() + ", floor of 10: "
+        + list.floor(10) + ", ceil of 10: " + list.ceil(10) + ", rank of 11: " + list.rank(11));
+    System.out.println("keys in [100, 110]: " + list.keys(100, 110));
+  }
+}
@@ -0,0 +1,55 @@
+package org.skywang.tree;
+
+import org.skywang.linear.HelloQueue;
+
+/**
+ * the ordered symbol table api shared by the mutable trees & lists of this package
+ * (1) the keys are kept in ascending order, a key has at most one value and null is no value,
+ * put() w/ a null value deletes the key
+ * (2) rank() & select() are inverse, select(rank(key)) is key for every key in the table
+ * (3) min, max, floor, ceil & select return null when there is no such key
+ */
+public interface OrderedSymbolTable<Key extends Comparable<Key>, Value> {
+
+  int size();
+
+  boolean isEmpty();
+
+  boolean contain(Key key);
+
+  Value get(Key key);
+
+  void put(Key key, Value value);
+
+  void delete(Key key);
+
+  // throw a NoSuchElementException on an empty table
+  void deleteMin();
+
+  void deleteMax();
+
+  Key min();
+
+  Key max();
+
+  // the largest key less than or equal to key
+  Key floor(Key key);
+
+  // the smallest key greater than or equal to key
+  Key ceil(Key key);
+
+  // the key of rank k, k keys are smaller than it
+  Key select(int k);
+
+  // the number of keys smaller than key
+  int rank(Key key);
+
+  // the keys in ascending order
+  HelloQueue<Key> keys();
+
+  // the keys in [lo, hi] in ascending order
+  HelloQueue<Key> keys(Key lo, Key hi);
+
+  // the number of keys in [lo, hi]
+  int size(Key lo, Key hi);
+}
@@ -0,0 +1,476 @@
+package org.skywang.tree;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.skywang.linear.HelloQueue;
+import org.skywang.linear.HelloStack;
+
+/**
+ * a persistent (immutable) binary search tree w/ the ordered symbol table api of BinarySearchTree
+ * (1) put & delete never change a node, they copy the nodes on the path from the root to the
+ * changed node and return a new version of the tree, all the other nodes are shared w/ the old
+ * version
+ * (2) a version never changes, so taking a snapshot is just keeping a reference, O(1), and any
+ * number of threads can read or iterate an old version w/o locks while writers create new ones
+ * (3) the tree is a treap: every node also has a random priority, drawn once when its key is
+ * put, and a parent's priority is never lower than its children's, so the shape is that of a
+ * random BST whatever the insertion order or the hash codes of the keys, the copied path is
+ * O(log n) long expected even for sorted keys
+ *
+ * to share a changing tree between threads, keep the current version in an AtomicReference (or a
+ * volatile field): readers get() it once and work on that version, a writer builds the next
+ * version and publishes it w/ compareAndSet.
+ */
+public final class PersistentBinarySearchTree<Key extends Comparable<Key>, Value> {
+  private final Node<Key, Value> root;
+
+  // immutable tree node, the final fields make a published node safe to read from any thread
+  private static final class Node<Key, Value> {
+    // node comparable key for sort
+    private final Key key;
+    // node data
+    private final Value value;
+    // heap order priority, random, kept by the copies of the node
+    private final int priority;
+    // left subtree
+    private final Node<Key, Value> left;
+    // right subtree
+    private final Node<Key, Value> right;
+    // number of nodes in sub-tree
+    private final int numNode;
+
+    Node(Key key, Value value, int priority, Node<Key, Value> left, Node<Key, Value> right) {
+      this.key = key;
+      this.value = value;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.numNode = 1 + size(left) + size(right);
+    }
+  }
+
+  // an empty tree
+  public PersistentBinarySearchTree() {
+    this(null);
+  }
+
+  private PersistentBinarySearchTree(Node<Key, Value> root) {
+    this.root = root;
+  }
+
+  // get size (node #) of the tree
+  public int size() {
+    return size(root);
+  }
+
+  private static int size(Node<?, ?> node) {
+    return (node == null) ? 0 : node.numNode;
+  }
+
+  // is the tree empty
+  public boolean isEmpty() {
+    return root == null;
+  }
+
+  // does the tree contain key-value pair w/i the given key
+  public boolean contain(Key key) {
+    return get(key) != null;
+  }
+
+  // return the associated value of the given key. null if the given key is not existed
+  public Value get(Key key) {
+    Node<Key, Value> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        node = node.right;
+      } else {
+        return node.value;
+      }
+    }
+    return null;
+  }
+
+  // a new version w/ the key-value pair, this version is not changed
+  public PersistentBinarySearchTree<Key, Value> put(Key key, Value value) {
+    if (value == null) {
+      return delete(key);
+    }
+    // the priority of a new node, an existing key keeps its own
+    int priority = ThreadLocalRandom.current().nextInt();
+    PersistentBinarySearchTree<Key, Value> tree =
+        new PersistentBinarySearchTree<Key, Value>(put(root, key, value, priority));
+    assert tree.check();
+    return tree;
+  }
+
+  private Node<Key, Value> put(Node<Key, Value> node, Key key, Value value, int priority) {
+    if (node == null) {
+      return new Node<Key, Value>(key, value, priority, null, null);
+    }
+    int cmp = key.compareTo(node.key);
+    if (cmp < 0) {
+      Node<Key, Value> left = put(node.left, key, value, priority);
+      if (left.priority > node.priority) {
+        // rotate right, the new node moves above node
+        return new Node<Key, Value>(left.key, left.value, left.priority, left.left,
+            new Node<Key, Value>(node.key, node.value, node.priority, left.right, node.right));
+      }
+      return new Node<Key, Value>(node.key, node.value, node.priority, left, node.right);
+    } else if (cmp > 0) {
+      Node<Key, Value> right = put(node.right, key, value, priority);
+      if (right.priority > node.priority) {
+        // rotate left
+        return new Node<Key, Value>(right.key, right.value, right.priority,
+            new Node<Key, Value>(node.key, node.value, node.priority, node.left, right.left),
+            right.right);
+      }
+      return new Node<Key, Value>(node.key, node.value, node.priority, node.left, right);
+    } else {
+      return new Node<Key, Value>(key, value, node.priority, node.left, node.right);
+    }
+  }
+
+  // a new version w/o the key, this version if the key is not existed
+  public PersistentBinarySearchTree<Key, Value> delete(Key key) {
+    if (!contain(key)) {
+      return this;
+    }
+    PersistentBinarySearchTree<Key, Value> tree =
+        new PersistentBinarySearchTree<Key, Value>(delete(root, key));
+    assert tree.check();
+    return tree;
+  }
+
+  // the key is in the subtree
+  private Node<Key, Value> delete(Node<Key, Value> node, Key key) {
+    int cmp = key.compareTo(node.key);
+    if (cmp < 0) {
+      return new Node<Key, Value>(node.key, node.value, node.priority, delete(node.left, key),
+          node.right);
+    } else if (cmp > 0) {
+      return new Node<Key, Value>(node.key, node.value, node.priority, node.left,
+          delete(node.right, key));
+    } else {
+      return join(node.left, node.right);
+    }
+  }
+
+  // joins two subtrees, all the keys of a are smaller than the keys of b, the root w/ the higher
+  // priority stays on top
+  private Node<Key, Value> join(Node<Key, Value> a, Node<Key, Value> b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    if (a.priority >= b.priority) {
+      return new Node<Key, Value>(a.key, a.value, a.priority, a.left, join(a.right, b));
+    }
+    return new Node<Key, Value>(b.key, b.value, b.priority, join(a, b.left), b.right);
+  }
+
+  // a new version w/o the minimal key
+  public PersistentBinarySearchTree<Key, Value> deleteMin() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("can not perform deleteMin in a empty tree");
+    }
+    return delete(min());
+  }
+
+  // a new version w/o the maximal key
+  public PersistentBinarySearchTree<Key, Value> deleteMax() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("can not perform deleteMax in a empty tree");
+    }
+    return delete(max());
+  }
+
+  // get the minimal key from the tree, null if the tree is empty
+  public Key min() {
+    Node<Key, Value> node = root;
+    if (node == null) {
+      return null;
+    }
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node.key;
+  }
+
+  // get the maximal key from the tree, null if the tree is empty
+  public Key max() {
+    Node<Key, Value> node = root;
+    if (node == null) {
+      return null;
+    }
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node.key;
+  }
+
+  // find the floor key (largest key in the tree less than or equal to key)
+  public Key floor(Key key) {
+    Key floor = null;
+    Node<Key, Value> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        floor = node.key;
+        node = node.right;
+      } else {
+        return node.key;
+      }
+    }
+    return floor;
+  }
+
+  // find the ceil key (smallest key in the tree larger than or equal to key)
+  public Key ceil(Key key) {
+    Key ceil = null;
+    Node<Key, Value> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp > 0) {
+        node = node.right;
+      } else if (cmp < 0) {
+        ceil = node.key;
+        node = node.left;
+      } else {
+        return node.key;
+      }
+    }
+    return ceil;
+  }
+
+  // select the key that at rank index k, null if k is out of [0, size)
+  public Key select(int k) {
+    if (k < 0 || k >= size()) {
+      return null;
+    }
+    Node<Key, Value> node = root;
+    while (node != null) {
+      int leftNum = size(node.left);
+      if (leftNum > k) {
+        node = node.left;
+      } else if (leftNum < k) {
+        k -= leftNum + 1;
+        node = node.right;
+      } else {
+        return node.key;
+      }
+    }
+    return null;
+  }
+
+  // get the number of key in the tree that smaller the given key
+  public int rank(Key key) {
+    int rank = 0;
+    Node<Key, Value> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        rank += 1 + size(node.left);
+        node = node.right;
+      } else {
+        return rank + size(node.left);
+      }
+    }
+    return rank;
+  }
+
+  // store all the keys in queue in ascending order
+  public HelloQueue<Key> keys() {
+    if (isEmpty()) {
+      return new HelloQueue<Key>(null);
+    }
+    return keys(min(), max());
+  }
+
+  // store the keys in queue with two given keys lo & hi
+  public HelloQueue<Key> keys(Key lo, Key hi) {
+    HelloQueue<Key> queue = new HelloQueue<Key>(null);
+    for (Key key : range(lo, hi)) {
+      queue.add(key);
+    }
+    return queue;
+  }
+
+  // get the number of node between the two given key
+  public int size(Key lo, Key hi) {
+    if (lo.compareTo(hi) > 0) {
+      return 0;
+    }
+    if (contain(hi)) {
+      return rank(hi) - rank(lo) + 1;
+    } else {
+      return rank(hi) - rank(lo);
+    }
+  }
+
+  // get the height of the tree, the number of levels
+  public int height() {
+    return height(root);
+  }
+
+  private int height(Node<Key, Value> node) {
+    if (node == null) {
+      return 0;
+    }
+    return 1 + Math.max(height(node.left), height(node.right));
+  }
+
+  // the keys in [lo, hi] in ascending order, found lazily while iterating this version
+  public Iterable<Key> range(final Key lo, final Key hi) {
+    return new Iterable<Key>() {
+      @Override
+      public Iterator<Key> iterator() {
+        return new RangeIterator<Key>(lo, hi) {
+          @Override
+          Key valueOf(Node<Key, Value> node) {
+            return node.key;
+          }
+        };
+      }
+    };
+  }
+
+  // the key-value pairs in [lo, hi] in ascending order, found lazily like range()
+  public Iterable<Map.Entry<Key, Value>> entries(final Key lo, final Key hi) {
+    return new Iterable<Map.Entry<Key, Value>>() {
+      @Override
+      public Iterator<Map.Entry<Key, Value>> iterator() {
+        return new RangeIterator<Map.Entry<Key, Value>>(lo, hi) {
+          @Override
+          Map.Entry<Key, Value> valueOf(Node<Key, Value> node) {
+            return new AbstractMap.SimpleImmutableEntry<Key, Value>(node.key, node.value);
+          }
+        };
+      }
+    };
+  }
+
+  // in-order iteration w/ an explicit stack, a version never changes so there is nothing to check
+  private abstract class RangeIterator<T> implements Iterator<T> {
+    private final HelloStack<Node<Key, Value>> stack = new HelloStack<Node<Key, Value>>(null);
+    private final Key hi;
+
+    RangeIterator(Key lo, Key hi) {
+      this.hi = hi;
+      Node<Key, Value> node = root;
+      while (node != null) {
+        int cmp = lo.compareTo(node.key);
+        if (cmp < 0) {
+          stack.push(node);
+          node = node.left;
+        } else if (cmp > 0) {
+          node = node.right;
+        } else {
+          stack.push(node);
+          break;
+        }
+      }
+    }
+
+    abstract T valueOf(Node<Key, Value> node);
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty() && stack.peek().key.compareTo(hi) <= 0;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Node<Key, Value> node = stack.pop();
+      for (Node<Key, Value> child = node.right; child != null; child = child.left) {
+        stack.push(child);
+      }
+      return valueOf(node);
+    }
+  }
+
+  // check the integrity of the tree
+  private boolean check() {
+    if (!isBinarySearchTree(root, null, null)) {
+      System.out.println("Not int a symmetic order");
+      return false;
+    }
+    if (!isHeapOrdered(root)) {
+      System.out.println("priorities not in heap order");
+      return false;
+    }
+    return true;
+  }
+
+  private boolean isBinarySearchTree(Node<Key, Value> node, Key min, Key max) {
+    if (node == null) {
+      return true;
+    }
+    if (min != null && min.compareTo(node.key) >= 0) {
+      return false;
+    }
+    if (max != null && max.compareTo(node.key) <= 0) {
+      return false;
+    }
+    return isBinarySearchTree(node.left, min, node.key)
+        && isBinarySearchTree(node.right, node.key, max);
+  }
+
+  private boolean isHeapOrdered(Node<Key, Value> node) {
+    if (node == null) {
+      return true;
+    }
+    if ((node.left != null && node.left.priority > node.priority)
+        || (node.right != null && node.right.priority > node.priority)) {
+      return false;
+    }
+    return isHeapOrdered(node.left) && isHeapOrdered(node.right);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    final AtomicReference<PersistentBinarySearchTree<Integer, Integer>> current =
+        new AtomicReference<PersistentBinarySearchTree<Integer, Integer>>(
+            new PersistentBinarySearchTree<Integer, Integer>());
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        // sorted keys, the worst case of the unbalanced BinarySearchTree
+        for (int i = 0; i < 100000; i++) {
+          current.set(current.get().put(i, i));
+        }
+      }
+    });
+    writer.start();
+    Thread.sleep(20);
+    // a snapshot is the version at hand, it does not change while the writer goes on
+    PersistentBinarySearchTree<Integer, Integer> snapshot = current.get();
+    int count = 0;
+    for (Integer key : snapshot.range(Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+      count++;
+    }
+    System.out.println("snapshot size: " + snapshot.size() + ", iterated keys: " + count);
+    writer.join();
+
+    PersistentBinarySearchTree<Integer, Integer> latest = current.get();
+    System.out.println("latest size: " + latest.size() + ", height: " + latest.height());
+    PersistentBinarySearchTree<Integer, Integer> trimmed = latest.delete(42).deleteMin();
+    System.out.println("after deleting 42 & the min, size: " + trimmed.size() + ", ceil of 42: "
+        + trimmed.ceil(42) + ", latest still contains 42: " + latest.contain(42));
+  }
+}
@@ -0,0 +1,607 @@
+package org.skywang.tree;
+
+import java.util.NoSuchElementException;
+
+import org.skywang.linear.HelloQueue;
+
+/**
+ * a left-leaning red-black tree, a balanced BinarySearchTree w/ the same ordered symbol table api
+ * (1) a red link glues a node to its parent into a 3-node of a 2-3 tree, red links lean left and
+ * no node has two red links
+ * (2) every path from the root to a null link has the same number of black links, so the height
+ * is at most 2 lg n even for keys that are put in sorted order
+ * (3) put & delete rotate and flip colors on the way back up, every node keeps the size of its
+ * subtree, so rank() & select() stay O(log n)
+ */
+public class RedBlackTree<Key extends Comparable<Key>, Value>
+    implements OrderedSymbolTable<Key, Value> {
+  private final static boolean RED = true;
+  private final static boolean BLACK = false;
+
+  // root of the red-black tree
+  private RbNode root;
+
+  // red-black tree node structure
+  private class RbNode {
+    // node comparable key for sort
+    private Key key;
+    // node data
+    private Value value;
+    // left subtree
+    private RbNode left;
+    // right subtree
+    private RbNode right;
+    // color of the link from the parent
+    private boolean color;
+    // number of nodes in sub-tree
+    private int numNode;
+
+    public RbNode(Key key, Value value, boolean color, int numNode) {
+      this.key = key;
+      this.value = value;
+      this.color = color;
+      this.numNode = numNode;
+    }
+  }
+
+  public RedBlackTree() {
+    this.root = null;
+  }
+
+  // get size (node #) of the tree
+  @Override
+  public int size() {
+    return size(root);
+  }
+
+  private int size(RbNode node) {
+    if (node == null) {
+      return 0;
+    }
+    return node.numNode;
+  }
+
+  private boolean isRed(RbNode node) {
+    if (node == null) {
+      return false;
+    }
+    return node.color == RED;
+  }
+
+  // is the tree empty
+  @Override
+  public boolean isEmpty() {
+    return this.root == null;
+  }
+
+  // does the tree contain key-value pair w/i the given key
+  @Override
+  public boolean contain(Key key) {
+    return get(key) != null;
+  }
+
+  // return the associated value of the given key. null if the given key is not existed
+  @Override
+  public Value get(Key key) {
+    RbNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        node = node.right;
+      } else {
+        return node.value;
+      }
+    }
+    return null;
+  }
+
+  // put the key-value pair into the tree, if key is already exists, update the value
+  @Override
+  public void put(Key key, Value value) {
+    if (value == null) {
+      delete(key);
+      return;
+    }
+    root = put(root, key, value);
+    root.color = BLACK;
+    assert check();
+  }
+
+  private RbNode put(RbNode node, Key key, Value value) {
+    if (node == null) {
+      return new RbNode(key, value, RED, 1);
+    }
+    int cmp = key.compareTo(node.key);
+    if (cmp < 0) {
+      node.left = put(node.left, key, value);
+    } else if (cmp > 0) {
+      node.right = put(node.right, key, value);
+    } else {
+      node.value = value;
+    }
+
+    // fix up the right-leaning links & the 4-nodes on the way up
+    if (isRed(node.right) && !isRed(node.left)) {
+      node = rotateLeft(node);
+    }
+    if (isRed(node.left) && isRed(node.left.left)) {
+      node = rotateRight(node);
+    }
+    if (isRed(node.left) && isRed(node.right)) {
+      flipColors(node);
+    }
+    node.numNode = 1 + size(node.left) + size(node.right);
+    return node;
+  }
+
+  // delete the minimal node from the tree
+  @Override
+  public void deleteMin() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("can not perform deleteMin in a empty tree");
+    }
+    // the root is made red if both children are black, so the top-down pass can borrow from it
+    if (!isRed(root.left) && !isRed(root.right)) {
+      root.color = RED;
+    }
+    root = deleteMin(root);
+    if (!isEmpty()) {
+      root.color = BLACK;
+    }
+    assert check();
+  }
+
+  private RbNode deleteMin(RbNode node) {
+    if (node.left == null) {
+      return null;
+    }
+    if (!isRed(node.left) && !isRed(node.left.left)) {
+      node = moveRedLeft(node);
+    }
+    node.left = deleteMin(node.left);
+    return balance(node);
+  }
+
+  // delete the maximal node from the tree
+  @Override
+  public void deleteMax() {
+    if (isEmpty()) {
+      throw new NoSuchElementException("can not perform deleteMax in a empty tree");
+    }
+    if (!isRed(root.left) && !isRed(root.right)) {
+      root.color = RED;
+    }
+    root = deleteMax(root);
+    if (!isEmpty()) {
+      root.color = BLACK;
+    }
+    assert check();
+  }
+
+  private RbNode deleteMax(RbNode node) {
+    if (isRed(node.left)) {
+      node = rotateRight(node);
+    }
+    if (node.right == null) {
+      return null;
+    }
+    if (!isRed(node.right) && !isRed(node.right.left)) {
+      node = moveRedRight(node);
+    }
+    node.right = deleteMax(node.right);
+    return balance(node);
+  }
+
+  // delete the key-value pair w/i the given key, nothing happens if the key is not existed
+  @Override
+  public void delete(Key key) {
+    if (!contain(key)) {
+      return;
+    }
+    if (!isRed(root.left) && !isRed(root.right)) {
+      root.color = RED;
+    }
+    root = delete(root, key);
+    if (!isEmpty()) {
+      root.color = BLACK;
+    }
+    assert check();
+  }
+
+  // the key is in the subtree, every node on the search path is kept out of a 2-node
+  private RbNode delete(RbNode node, Key key) {
+    if (key.compareTo(node.key) < 0) {
+      if (!isRed(node.left) && !isRed(node.left.left)) {
+        node = moveRedLeft(node);
+      }
+      node.left = delete(node.left, key);
+    } else {
+      if (isRed(node.left)) {
+        node = rotateRight(node);
+      }
+      if (key.compareTo(node.key) == 0 && node.right == null) {
+        return null;
+      }
+      if (!isRed(node.right) && !isRed(node.right.left)) {
+        node = moveRedRight(node);
+      }
+      if (key.compareTo(node.key) == 0) {
+        // replace w/ the successor, then delete the successor from the right subtree
+        RbNode successor = getMin(node.right);
+        node.key = successor.key;
+        node.value = successor.value;
+        node.right = deleteMin(node.right);
+      } else {
+        node.right = delete(node.right, key);
+      }
+    }
+    return balance(node);
+  }
+
+  // make a right-leaning link lean to the left
+  private RbNode rotateLeft(RbNode node) {
+    RbNode x = node.right;
+    node.right = x.left;
+    x.left = node;
+    x.color = node.color;
+    node.color = RED;
+    x.numNode = node.numNode;
+    node.numNode = 1 + size(node.left) + size(node.right);
+    return x;
+  }
+
+  // make a left-leaning link lean to the right
+  private RbNode rotateRight(RbNode node) {
+    RbNode x = node.left;
+    node.left = x.right;
+    x.right = node;
+    x.color = node.color;
+    node.color = RED;
+    x.numNode = node.numNode;
+    node.numNode = 1 + size(node.left) + size(node.right);
+    return x;
+  }
+
+  // split (or join on the way down) a 4-node by flipping the colors of a node & its children
+  private void flipColors(RbNode node) {
+    node.color = !node.color;
+    node.left.color = !node.left.color;
+    node.right.color = !node.right.color;
+  }
+
+  // node is red and both node.left & node.left.left are black, make node.left or one of its
+  // children red
+  private RbNode moveRedLeft(RbNode node) {
+    flipColors(node);
+    if (isRed(node.right.left)) {
+      node.right = rotateRight(node.right);
+      node = rotateLeft(node);
+      flipColors(node);
+    }
+    return node;
+  }
+
+  // node is red and both node.right & node.right.left are black, make node.right or one of its
+  // children red
+  private RbNode moveRedRight(RbNode node) {
+    flipColors(node);
+    if (isRed(node.left.left)) {
+      node = rotateRight(node);
+      flipColors(node);
+    }
+    return node;
+  }
+
+  // restore the red-black invariants on the way up after a delete
+  private RbNode balance(RbNode node) {
+    if (isRed(node.right) && !isRed(node.left)) {
+      node = rotateLeft(node);
+    }
+    if (isRed(node.left) && isRed(node.left.left)) {
+      node = rotateRight(node);
+    }
+    if (isRed(node.left) && isRed(node.right)) {
+      flipColors(node);
+    }
+    node.numNode = 1 + size(node.left) + size(node.right);
+    return node;
+  }
+
+  // get the minimal key from the tree, null if the tree is empty
+  @Override
+  public Key min() {
+    RbNode node = getMin(root);
+    return (node == null) ? null : node.key;
+  }
+
+  private RbNode getMin(RbNode node) {
+    if (node == null) {
+      return null;
+    }
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node;
+  }
+
+  // get the maximal key from the tree, null if the tree is empty
+  @Override
+  public Key max() {
+    RbNode node = root;
+    if (node == null) {
+      return null;
+    }
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node.key;
+  }
+
+  // find the floor key (largest key in the tree less than or equal to key)
+  @Override
+  public Key floor(Key key) {
+    Key floor = null;
+    RbNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        floor = node.key;
+        node = node.right;
+      } else {
+        return node.key;
+      }
+    }
+    return floor;
+  }
+
+  // find the ceil key (smallest key in the tree larger than or equal to key)
+  @Override
+  public Key ceil(Key key) {
+    Key ceil = null;
+    RbNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp > 0) {
+        node = node.right;
+      } else if (cmp < 0) {
+        ceil = node.key;
+        node = node.left;
+      } else {
+        return node.key;
+      }
+    }
+    return ceil;
+  }
+
+  // select the key that at rank index k, null if k is out of [0, size)
+  @Override
+  public Key select(int k) {
+    if (k < 0 || k >= size()) {
+      return null;
+    }
+    RbNode node = root;
+    while (node != null) {
+      int leftNum = size(node.left);
+      if (leftNum > k) {
+        node = node.left;
+      } else if (leftNum < k) {
+        k -= leftNum + 1;
+        node = node.right;
+      } else {
+        return node.key;
+      }
+    }
+    return null;
+  }
+
+  // get the number of key in the tree that smaller the given key
+  @Override
+  public int rank(Key key) {
+    int rank = 0;
+    RbNode node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp < 0) {
+        node = node.left;
+      } else if (cmp > 0) {
+        rank += 1 + size(node.left);
+        node = node.right;
+      } else {
+        return rank + size(node.left);
+      }
+    }
+    return rank;
+  }
+
+  // store all the keys in queue in ascending order
+  @Override
+  public HelloQueue<Key> keys() {
+    if (isEmpty()) {
+      return new HelloQueue<Key>(null);
+    }
+    return keys(min(), max());
+  }
+
+  // store the keys in queue with two given keys lo & hi
+  @Override
+  public HelloQueue<Key> keys(Key lo, Key hi) {
+    HelloQueue<Key> queue = new HelloQueue<Key>(null);
+    keys(root, queue, lo, hi);
+    return queue;
+  }
+
+  private void keys(RbNode node, HelloQueue<Key> queue, Key lo, Key hi) {
+    if (node == null) {
+      return;
+    }
+    int cmplo = lo.compareTo(node.key);
+    int cmphi = hi.compareTo(node.key);
+    if (cmplo < 0) {
+      keys(node.left, queue, lo, hi);
+    }
+    if (cmplo <= 0 && cmphi >= 0) {
+      queue.add(node.key);
+    }
+    if (cmphi > 0) {
+      keys(node.right, queue, lo, hi);
+    }
+  }
+
+  // get the number of node between the two given key
+  @Override
+  public int size(Key lo, Key hi) {
+    if (lo.compareTo(hi) > 0) {
+      return 0;
+    }
+    if (contain(hi)) {
+      return rank(hi) - rank(lo) + 1;
+    } else {
+      return rank(hi) - rank(lo);
+    }
+  }
+
+  // get the height of the tree, the number of nodes on the longest path from the root
+  public int height() {
+    return height(root);
+  }
+
+  private int height(RbNode node) {
+    if (node == null) {
+      return 0;
+    }
+    return 1 + Math.max(height(node.left), height(node.right));
+  }
+
+  // check the integrity of the red-black tree
+  private boolean check() {
+    if (!isBinarySearchTree()) {
+      System.out.println("Not int a symmetic order");
+    }
+    if (!isSizeConsistent()) {
+      System.out.println("subtree # not consistent");
+    }
+    if (!isRankConsistent()) {
+      System.out.println("ranks not consistent");
+    }
+    if (!is23()) {
+      System.out.println("Not a 2-3 tree");
+    }
+    if (!isBalanced()) {
+      System.out.println("Not balanced");
+    }
+    return isBinarySearchTree() && isSizeConsistent() && isRankConsistent() && is23()
+        && isBalanced();
+  }
+
+  private boolean isBinarySearchTree() {
+    return isBinarySearchTree(root, null, null);
+  }
+
+  private boolean isBinarySearchTree(RbNode node, Key min, Key max) {
+    if (node == null) {
+      return true;
+    }
+    if (min != null && min.compareTo(node.key) >= 0) {
+      return false;
+    }
+    if (max != null && max.compareTo(node.key) <= 0) {
+      return false;
+    }
+    return isBinarySearchTree(node.left, min, node.key)
+        && isBinarySearchTree(node.right, node.key, max);
+  }
+
+  private boolean isSizeConsistent() {
+    return isSizeConsistent(root);
+  }
+
+  private boolean isSizeConsistent(RbNode node) {
+    if (node == null) {
+      return true;
+    }
+    if (node.numNode != (1 + size(node.left) + size(node.right))) {
+      return false;
+    }
+    return isSizeConsistent(node.left) && isSizeConsistent(node.right);
+  }
+
+  private boolean isRankConsistent() {
+    for (int i = 0; i < size(); i++) {
+      if (i != rank(select(i))) {
+        return false;
+      }
+    }
+    HelloQueue<Key> keys = keys();
+    while (!keys.isEmpty()) {
+      Key key = keys.pop();
+      if (key.compareTo(select(rank(key))) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // no right-leaning red link, and no node w/ two red links in a row
+  private boolean is23() {
+    return is23(root);
+  }
+
+  private boolean is23(RbNode node) {
+    if (node == null) {
+      return true;
+    }
+    if (isRed(node.right)) {
+      return false;
+    }
+    if (node != root && isRed(node) && isRed(node.left)) {
+      return false;
+    }
+    return is23(node.left) && is23(node.right);
+  }
+
+  // every path from the root to a null link has the same number of black links
+  private boolean isBalanced() {
+    int black = 0;
+    RbNode node = root;
+    while (node != null) {
+      if (!isRed(node)) {
+        black++;
+      }
+      node = node.left;
+    }
+    return isBalanced(root, black);
+  }
+
+  private boolean isBalanced(RbNode node, int black) {
+    if (node == null) {
+      return black == 0;
+    }
+    if (!isRed(node)) {
+      black--;
+    }
+    return isBalanced(node.left, black) && isBalanced(node.right, black);
+  }
+
+  public static void main(String[] args) {
+    RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>();
+    // sorted keys, the worst case of the unbalanced BinarySearchTree
+    for (int i = 0; i < 1024; i++) {
+      tree.put(i, i * i);
+    }
+    System.out.println("size: " + tree.size() + ", height: " + tree.height());
+    System.out.println("rank of key 100: " + tree.rank(100) + ", key at rank 100: "
+        + tree.select(100));
+    System.out.println("floor of 1500: " + tree.floor(1500) + ", ceil of -1: " + tree.ceil(-1));
+    System.out.println("keys in [10, 15]: " + tree.keys(10, 15));
+
+    for (int i = 0; i < 1024; i += 2) {
+      tree.delete(i);
+    }
+    System.out.println("after deleting the even keys, size: " + tree.size() + ", height: "
+        + tree.height() + ", min: " + tree.min());
+  }
+}
@@ -0,0 +1,104 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BufferedLruCacheTest {
+
+  @Test
+  public void test_a_PutGet() {
+    BufferedLruCache<String, Integer> cache = new BufferedLruCache<String, Integer>(4);
+    assertNull(cache.put("a", 1));
+    assertEquals(Integer.valueOf(1), cache.put("a", 2));
+    assertEquals(Integer.valueOf(2), cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void test_b_BufferedHitPromotes() {
+    BufferedLruCache<String, Integer> cache = new BufferedLruCache<String, Integer>(3);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    // the hit on "a" is replayed by the put before it evicts
+    cache.put("d", 4);
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+  }
+
+  @Test
+  public void test_c_GetAllInLruOrder() {
+    BufferedLruCache<String, Integer> cache = new BufferedLruCache<String, Integer>(3);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    Collection<Map.Entry<String, Integer>> entries = cache.getAll();
+    List<String> keys = new ArrayList<String>();
+    for (Map.Entry<String, Integer> entry : entries) {
+      keys.add(entry.getKey());
+    }
+    assertEquals("[b, c, a]", keys.toString());
+  }
+
+  @Test
+  public void test_d_Remove() {
+    BufferedLruCache<String, Integer> cache = new BufferedLruCache<String, Integer>(3);
+    cache.put("a", 1);
+    cache.get("a");
+    assertEquals(Integer.valueOf(1), cache.remove("a"));
+    cache.cleanUp();
+    assertEquals(0, cache.getAll().size());
+  }
+
+  @Test
+  public void test_e_ConcurrentReaders() throws InterruptedException {
+    final BufferedLruCache<Integer, Integer> cache = new BufferedLruCache<Integer, Integer>(128);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int seed = t;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 50000; i++) {
+              int key = (i * 17 + seed) % 512;
+              Integer value = cache.get(key);
+              if (value == null) {
+                cache.put(key, key);
+              } else if (value.intValue() != key) {
+                throw new AssertionError("unexpected value " + value + " for key " + key);
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertTrue(cache.size() <= 128);
+    assertEquals(cache.size(), cache.getAll().size());
+  }
+}
@@ -0,0 +1,94 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CacheStatsTest {
+
+  @Test
+  public void test_a_LruCacheWheelStats() {
+    LruCacheWheelTest.FakeTicker ticker = new LruCacheWheelTest.FakeTicker();
+    LruCacheWheel<String, Integer> cache =
+        new LruCacheWheel<String, Integer>(2, 10, 0, TimeUnit.SECONDS, ticker);
+    final List<String> evicted = new ArrayList<String>();
+    cache.setStatsCounter(new StatsCounter());
+    cache.setEvictionListener(new EvictionListener<String, Integer>() {
+      @Override
+      public void onEviction(String key, Integer value, EvictionCause cause) {
+        evicted.add(key + "=" + value + ":" + cause);
+      }
+    });
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.get("a");
+    cache.get("x");
+    cache.put("c", 3);
+    ticker.advance(11, TimeUnit.SECONDS);
+    cache.get("a");
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(2, stats.missCount());
+    assertEquals(1, stats.evictionCount(EvictionCause.SIZE));
+    assertEquals(2, stats.evictionCount(EvictionCause.EXPIRED));
+    assertEquals(0, stats.weightedSize());
+    assertEquals("[b=2:SIZE, a=1:EXPIRED, c=3:EXPIRED]", evicted.toString());
+  }
+
+  @Test
+  public void test_b_ConcurrentLruCacheStats() {
+    ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>(2);
+    cache.setStatsCounter(new StatsCounter());
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.get("a");
+    cache.get("x");
+    cache.put("c", 3);
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(0.5, stats.hitRate(), 1e-9);
+    assertEquals(1, stats.evictionCount());
+    assertEquals(2, stats.weightedSize());
+  }
+
+  @Test
+  public void test_c_LoadingCacheStats() throws ExecutionException {
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16);
+    cache.setStatsCounter(new StatsCounter());
+    CacheLoader<String, Integer> loader = new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) {
+        return key.length();
+      }
+    };
+    cache.get("a", loader);
+    cache.get("a", loader);
+    cache.get("bb", loader);
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(2, stats.missCount());
+    assertEquals(2, stats.loadSuccessCount());
+    assertEquals(0, stats.loadFailureCount());
+  }
+
+  @Test
+  public void test_d_DisabledStats() {
+    LruCacheWheel<String, Integer> cache = new LruCacheWheel<String, Integer>(2);
+    cache.put("a", 1);
+    cache.get("a");
+    assertEquals(0, cache.stats().requestCount());
+    assertEquals(1, cache.stats().weightedSize());
+  }
+}
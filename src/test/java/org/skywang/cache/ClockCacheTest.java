@@ -0,0 +1,172 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ClockCacheTest {
+
+  @Test
+  public void test_a_PutGet() {
+    ClockCache<String, Integer> cache = new ClockCache<String, Integer>(4);
+    assertNull(cache.put("a", 1));
+    assertEquals(Integer.valueOf(1), cache.put("a", 11));
+    cache.put("b", 2);
+    assertEquals(Integer.valueOf(11), cache.get("a"));
+    assertEquals(Integer.valueOf(2), cache.get("b"));
+    assertNull(cache.get("c"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void test_b_SecondChance() {
+    ClockCache<String, Integer> cache = new ClockCache<String, Integer>(3);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    // the hand spares "a" once and takes "b"
+    cache.put("d", 4);
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+    assertTrue(cache.containsKey("c"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void test_c_RemoveClear() {
+    ClockCache<String, Integer> cache = new ClockCache<String, Integer>(2, true);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertEquals(Integer.valueOf(1), cache.remove("a"));
+    assertNull(cache.remove("a"));
+    cache.put("c", 3);
+    cache.put("d", 4);
+    assertEquals(2, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.testCount());
+    assertNull(cache.get("c"));
+  }
+
+  @Test
+  public void test_d_ClockProResistsScans() {
+    // 60 hot keys interleaved 1:1 w/ a scan, more distinct keys than capacity between two uses
+    ClockCache<Integer, Integer> clock = new ClockCache<Integer, Integer>(100);
+    ClockCache<Integer, Integer> clockPro = new ClockCache<Integer, Integer>(100, true);
+    int scan = 1000;
+    for (int i = 0; i < 60000; i++) {
+      int key = ((i & 1) == 0) ? (i / 2) % 60 : scan++;
+      for (ClockCache<Integer, Integer> cache : list(clock, clockPro)) {
+        if (cache.get(key) == null) {
+          cache.put(key, key);
+        }
+      }
+      if (i == 30000) {
+        clock.setStatsCounter(new StatsCounter());
+        clockPro.setStatsCounter(new StatsCounter());
+      }
+    }
+    double clockHitRate = clock.stats().hitRate();
+    double clockProHitRate = clockPro.stats().hitRate();
+    assertTrue(clockProHitRate + " vs " + clockHitRate, clockProHitRate > clockHitRate + 0.2);
+    assertTrue(clockPro.hotCount() > 0);
+    assertTrue(clockPro.testCount() <= 100);
+    assertEquals(0, clock.hotCount());
+  }
+
+  @Test
+  public void test_e_ClockProTestHit() {
+    ClockCache<String, Integer> cache = new ClockCache<String, Integer>(2, true);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    // "a" was still in its test period, its key is remembered
+    assertFalse(cache.containsKey("a"));
+    assertEquals(1, cache.testCount());
+    assertNull(cache.get("a"));
+    cache.put("a", 1);
+    assertEquals(1, cache.hotCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void test_f_StatsAndListener() {
+    ClockCache<String, Integer> cache = new ClockCache<String, Integer>(2);
+    final List<String> evicted = new ArrayList<String>();
+    cache.setStatsCounter(new StatsCounter());
+    cache.setEvictionListener(new EvictionListener<String, Integer>() {
+      @Override
+      public void onEviction(String key, Integer value, EvictionCause cause) {
+        evicted.add(key + "=" + value + ":" + cause);
+      }
+    });
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.get("b");
+    cache.get("x");
+    cache.put("c", 3);
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(1, stats.missCount());
+    assertEquals(1, stats.evictionCount(EvictionCause.SIZE));
+    assertEquals("[a=1:SIZE]", evicted.toString());
+  }
+
+  @Test
+  public void test_g_Concurrent() throws InterruptedException {
+    final ClockCache<Integer, Integer> cache = new ClockCache<Integer, Integer>(64, true);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Random random = new Random(seed);
+            for (int i = 0; i < 20000; i++) {
+              int key = random.nextInt(256);
+              Integer value = cache.get(key);
+              if (value == null) {
+                cache.put(key, key);
+              } else if (value != key) {
+                throw new AssertionError(key + " -> " + value);
+              }
+              if (i % 100 == 0) {
+                cache.remove(random.nextInt(256));
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertTrue(cache.size() <= 64);
+  }
+
+  private static List<ClockCache<Integer, Integer>> list(ClockCache<Integer, Integer> a,
+      ClockCache<Integer, Integer> b) {
+    List<ClockCache<Integer, Integer>> caches = new ArrayList<ClockCache<Integer, Integer>>();
+    caches.add(a);
+    caches.add(b);
+    return caches;
+  }
+}
@@ -0,0 +1,189 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentLruCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void test_a_GetAllInLruOrder() {
+    ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>(3);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    assertEquals("[b, c, a]", keys(cache).toString());
+
+    // the entries are copies, a later put does not change them
+    Map.Entry<String, Integer> first = cache.getAll().iterator().next();
+    cache.put("b", 20);
+    assertEquals(Integer.valueOf(2), first.getValue());
+  }
+
+  @Test
+  public void test_b_SnapshotRestore() throws IOException {
+    ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(4);
+    cache.put("a", "1");
+    cache.put("b", "22");
+    cache.put("c", "");
+    cache.get("a");
+    Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+    assertEquals(3, cache.snapshot(file, Serializer.STRING, Serializer.STRING));
+    assertFalse(Files.exists(file.resolveSibling("cache.snapshot.tmp")));
+
+    ConcurrentLruCache<String, String> restored = new ConcurrentLruCache<String, String>(4);
+    assertEquals(3, restored.restore(file, Serializer.STRING, Serializer.STRING));
+    assertEquals("[b, c, a]", keys(restored).toString());
+    assertEquals("1", restored.get("a"));
+    assertEquals("", restored.get("c"));
+
+    // the restored recency order decides the next eviction
+    restored.put("d", "4");
+    restored.put("e", "5");
+    assertFalse(restored.containsKey("b"));
+    assertTrue(restored.containsKey("a"));
+  }
+
+  @Test
+  public void test_c_RestoreKeepsMostRecent() throws IOException {
+    ConcurrentLruCache<Long, String> cache = new ConcurrentLruCache<Long, String>(1000);
+    for (long i = 0; i < 1000; i++) {
+      // larger than the write buffer every 100th entry
+      cache.put(i, (i % 100 == 0) ? new String(new char[100 * 1024]) : "v" + i);
+    }
+    Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+    assertEquals(1000, cache.snapshot(file, Serializer.LONG, Serializer.STRING));
+
+    ConcurrentLruCache<Long, String> restored = new ConcurrentLruCache<Long, String>(10);
+    assertEquals(10, restored.restore(file, Serializer.LONG, Serializer.STRING));
+    assertEquals(10, restored.size());
+    assertEquals("v999", restored.get(999L));
+    assertFalse(restored.containsKey(989L));
+    assertEquals(100 * 1024, cache.get(900L).length());
+  }
+
+  @Test(expected = IOException.class)
+  public void test_d_RestoreNotASnapshot() throws IOException {
+    File file = folder.newFile();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write("hello world!".getBytes("UTF-8"));
+    out.close();
+    new ConcurrentLruCache<String, String>(4).restore(file.toPath(), Serializer.STRING,
+        Serializer.STRING);
+  }
+
+  @Test
+  public void test_e_RestoreTruncated() throws IOException {
+    ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(4);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+    cache.snapshot(file, Serializer.STRING, Serializer.STRING);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+    ConcurrentLruCache<String, String> restored = new ConcurrentLruCache<String, String>(4);
+    try {
+      restored.restore(file, Serializer.STRING, Serializer.STRING);
+      fail("expected an IOException");
+    } catch (IOException e) {
+      // nothing is restored from a broken snapshot
+      assertEquals(0, restored.size());
+    }
+  }
+
+  @Test
+  public void test_f_BulkOperations() {
+    ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>(3);
+    StatsCounter stats = new StatsCounter();
+    cache.setStatsCounter(stats);
+    Map<String, Integer> entries = new LinkedHashMap<String, Integer>();
+    entries.put("a", 1);
+    entries.put("b", 2);
+    entries.put("c", 3);
+    entries.put("d", 4);
+    // put in the iteration order, "a" is evicted by "d"
+    cache.putAll(entries);
+    assertEquals("[b, c, d]", keys(cache).toString());
+
+    Map<String, Integer> found = cache.getAll(Arrays.asList("a", "b", "d"));
+    assertEquals(2, found.size());
+    assertEquals(Integer.valueOf(4), found.get("d"));
+    assertEquals("[c, b, d]", keys(cache).toString());
+    CacheStats snapshot = stats.snapshot(cache.size());
+    assertEquals(2, snapshot.hitCount());
+    assertEquals(1, snapshot.missCount());
+
+    cache.invalidateAll(Arrays.asList("b", "c", "x"));
+    assertEquals("[d]", keys(cache).toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void test_g_RestoreNegativeCount() throws IOException {
+    // a valid header w/ an entry count of -1
+    Path file = folder.getRoot().toPath().resolve("corrupt.snapshot");
+    Files.write(file, ByteBuffer.allocate(12).putInt(0x4c525553).putInt(1).putInt(-1).array());
+    new ConcurrentLruCache<String, String>(4).restore(file, Serializer.STRING, Serializer.STRING);
+  }
+
+  @Test
+  public void test_h_FailedSnapshotLeavesNoTmp() throws IOException {
+    ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(4);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    Path file = folder.getRoot().toPath().resolve("cache.snapshot");
+    Serializer<String> failing = new Serializer<String>() {
+      @Override
+      public byte[] serialize(String value) {
+        if (value.equals("b")) {
+          throw new IllegalStateException("can not serialize " + value);
+        }
+        return Serializer.STRING.serialize(value);
+      }
+
+      @Override
+      public String deserialize(byte[] bytes) {
+        return Serializer.STRING.deserialize(bytes);
+      }
+    };
+    try {
+      cache.snapshot(file, failing, Serializer.STRING);
+      fail("expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertFalse(Files.exists(file.resolveSibling("cache.snapshot.tmp")));
+      assertFalse(Files.exists(file));
+    }
+  }
+
+  private static <K, V> List<K> keys(ConcurrentLruCache<K, V> cache) {
+    List<K> keys = new ArrayList<K>();
+    for (Map.Entry<K, V> entry : cache.getAll()) {
+      keys.add(entry.getKey());
+    }
+    return keys;
+  }
+}
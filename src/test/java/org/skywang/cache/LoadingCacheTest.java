@@ -0,0 +1,175 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LoadingCacheTest {
+
+  @Test
+  public void test_a_LoadOnMiss() throws ExecutionException {
+    final AtomicInteger loads = new AtomicInteger();
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16);
+    CacheLoader<String, Integer> loader = new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) {
+        loads.incrementAndGet();
+        return key.length();
+      }
+    };
+    assertEquals(Integer.valueOf(5), cache.get("hello", loader));
+    assertEquals(Integer.valueOf(5), cache.get("hello", loader));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void test_b_CoalesceConcurrentMisses() throws InterruptedException {
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    final LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16);
+    final CacheLoader<String, Integer> loader = new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) throws InterruptedException {
+        loads.incrementAndGet();
+        Thread.sleep(100);
+        return 42;
+      }
+    };
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 16; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            assertEquals(Integer.valueOf(42), cache.get("hot", loader));
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void test_c_FailureIsNotCached() throws ExecutionException {
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16);
+    try {
+      cache.get("a", new CacheLoader<String, Integer>() {
+        @Override
+        public Integer load(String key) {
+          throw new IllegalStateException("backing store is down");
+        }
+      });
+      fail("the load failure should be propagated");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertEquals(Integer.valueOf(1), cache.get("a", new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) {
+        return 1;
+      }
+    }));
+  }
+
+  @Test
+  public void test_d_BulkLoadOnlyMisses() throws ExecutionException {
+    final List<Set<String>> calls = new ArrayList<Set<String>>();
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16);
+    cache.put("a", 1);
+    Map<String, Integer> result = cache.getAll(Arrays.asList("a", "bb", "ccc", "missing"),
+        new BulkLoader<String, Integer>() {
+          @Override
+          public Map<String, Integer> loadAll(Set<String> keys) {
+            calls.add(keys);
+            Map<String, Integer> loaded = new HashMap<String, Integer>();
+            for (String key : keys) {
+              if (!key.equals("missing")) {
+                loaded.put(key, key.length());
+              }
+            }
+            return loaded;
+          }
+        });
+    assertEquals(1, calls.size());
+    assertEquals(3, calls.get(0).size());
+    assertEquals("{a=1, bb=2, ccc=3}", result.toString());
+    assertEquals(Integer.valueOf(3), cache.getIfPresent("ccc"));
+    assertNull(cache.getIfPresent("missing"));
+  }
+
+  @Test
+  public void test_e_RefreshAfterWrite() throws ExecutionException {
+    LruCacheWheelTest.FakeTicker ticker = new LruCacheWheelTest.FakeTicker();
+    final AtomicInteger version = new AtomicInteger();
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16, 10,
+        TimeUnit.SECONDS, DIRECT_EXECUTOR, ticker);
+    CacheLoader<String, Integer> loader = new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) {
+        return version.incrementAndGet();
+      }
+    };
+    assertEquals(Integer.valueOf(1), cache.get("a", loader));
+    ticker.advance(5, TimeUnit.SECONDS);
+    assertEquals(Integer.valueOf(1), cache.get("a", loader));
+    assertEquals(1, version.get());
+
+    // past the threshold the current value is returned and a reload is started
+    ticker.advance(6, TimeUnit.SECONDS);
+    assertEquals(Integer.valueOf(1), cache.get("a", loader));
+    assertEquals(Integer.valueOf(2), cache.getIfPresent("a"));
+  }
+
+  @Test
+  public void test_f_FailedRefreshKeepsOldValue() throws ExecutionException {
+    LruCacheWheelTest.FakeTicker ticker = new LruCacheWheelTest.FakeTicker();
+    LoadingCache<String, Integer> cache = new LoadingCache<String, Integer>(16, 10,
+        TimeUnit.SECONDS, DIRECT_EXECUTOR, ticker);
+    cache.put("a", 1);
+    ticker.advance(20, TimeUnit.SECONDS);
+    assertEquals(Integer.valueOf(1), cache.get("a", new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String key) {
+        throw new IllegalStateException("backing store is down");
+      }
+    }));
+    assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+  }
+
+  private static final Executor DIRECT_EXECUTOR = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+}
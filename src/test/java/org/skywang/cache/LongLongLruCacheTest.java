@@ -0,0 +1,72 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LongLongLruCacheTest {
+
+  @Test
+  public void test_a_PutGet() {
+    LongLongLruCache cache = new LongLongLruCache(4);
+    cache.put(1, 10);
+    cache.put(1, 11);
+    cache.put(-5, 50);
+    assertEquals(11, cache.get(1, -1));
+    assertEquals(50, cache.get(-5, -1));
+    assertEquals(-1, cache.get(2, -1));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void test_b_LruEviction() {
+    LongLongLruCache cache = new LongLongLruCache(3);
+    cache.put(1, 1);
+    cache.put(2, 2);
+    cache.put(3, 3);
+    cache.get(1, 0);
+    cache.put(4, 4);
+    assertTrue(cache.containsKey(1));
+    assertFalse(cache.containsKey(2));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void test_c_MatchesReferenceLru() {
+    final int capacity = 64;
+    LongLongLruCache cache = new LongLongLruCache(capacity);
+    Map<Long, Long> reference = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+        return size() > capacity;
+      }
+    };
+    Random random = new Random(7);
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(200) * 1024L;
+      int op = random.nextInt(10);
+      if (op < 5) {
+        Long expected = reference.get(key);
+        assertEquals(expected == null ? Long.MIN_VALUE : expected.longValue(),
+            cache.get(key, Long.MIN_VALUE));
+      } else if (op < 9) {
+        reference.put(key, (long) i);
+        cache.put(key, i);
+      } else {
+        assertEquals(reference.remove(key) != null, cache.remove(key));
+      }
+    }
+    assertEquals(reference.size(), cache.size());
+  }
+}
@@ -0,0 +1,257 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LruCacheWheelTest {
+  private FakeTicker ticker;
+
+  @Before
+  public void init() {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  public void test_a_LruEviction() {
+    LruCacheWheel<String, Integer> cache = new LruCacheWheel<String, Integer>(3);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    cache.put("d", 4);
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void test_b_ExpireAfterWrite() {
+    LruCacheWheel<String, Integer> cache =
+        new LruCacheWheel<String, Integer>(10, 10, 0, TimeUnit.SECONDS, ticker);
+    cache.put("a", 1);
+    ticker.advance(5, TimeUnit.SECONDS);
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    ticker.advance(5, TimeUnit.SECONDS);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void test_c_ExpireAfterAccess() {
+    LruCacheWheel<String, Integer> cache =
+        new LruCacheWheel<String, Integer>(10, 0, 10, TimeUnit.SECONDS, ticker);
+    cache.put("a", 1);
+    for (int i = 0; i < 5; i++) {
+      ticker.advance(8, TimeUnit.SECONDS);
+      assertEquals(Integer.valueOf(1), cache.get("a"));
+    }
+    ticker.advance(11, TimeUnit.SECONDS);
+    assertFalse(cache.containsKey("a"));
+  }
+
+  @Test
+  public void test_d_WheelDropsUntouchedEntries() {
+    LruCacheWheel<Integer, Integer> cache =
+        new LruCacheWheel<Integer, Integer>(1000, 3, 0, TimeUnit.HOURS, ticker);
+    for (int i = 0; i < 500; i++) {
+      cache.put(i, i);
+      ticker.advance(1, TimeUnit.SECONDS);
+    }
+    ticker.advance(2, TimeUnit.HOURS);
+    assertEquals(500, cache.size());
+    // cascades down from the hour wheel w/o touching the entries
+    ticker.advance(1, TimeUnit.HOURS);
+    cache.cleanUp();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void test_e_RewriteExtendsExpiration() {
+    LruCacheWheel<String, Integer> cache =
+        new LruCacheWheel<String, Integer>(10, 10, 0, TimeUnit.SECONDS, ticker);
+    cache.put("a", 1);
+    ticker.advance(8, TimeUnit.SECONDS);
+    cache.put("a", 2);
+    ticker.advance(8, TimeUnit.SECONDS);
+    assertEquals(Integer.valueOf(2), cache.get("a"));
+    assertEquals(Integer.valueOf(2), cache.remove("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void test_f_WeightBound() {
+    LruCacheWheel<String, String> cache =
+        new LruCacheWheel<String, String>(10, new Weigher<String, String>() {
+          @Override
+          public int weigh(String key, String value) {
+            return value.length();
+          }
+        });
+    cache.put("a", "xxxx");
+    cache.put("b", "xxxx");
+    assertEquals(8, cache.weightedSize());
+    cache.put("c", "xxxx");
+    assertFalse(cache.containsKey("a"));
+    assertEquals(8, cache.weightedSize());
+
+    // an update adjusts the total and evicts from the tail until the budget holds
+    cache.put("c", "xxxxxxxxx");
+    assertFalse(cache.containsKey("b"));
+    assertTrue(cache.containsKey("c"));
+    assertEquals(9, cache.weightedSize());
+
+    // heavier than the whole budget
+    cache.put("d", "xxxxxxxxxxx");
+    assertFalse(cache.containsKey("d"));
+    assertEquals(0, cache.weightedSize());
+  }
+
+  @Test
+  public void test_g_RemoveReleasesWeight() {
+    LruCacheWheel<String, Integer> cache = new LruCacheWheel<String, Integer>(100,
+        new Weigher<String, Integer>() {
+          @Override
+          public int weigh(String key, Integer value) {
+            return value;
+          }
+        }, 10, 0, TimeUnit.SECONDS, ticker);
+    cache.put("a", 30);
+    cache.put("b", 20);
+    cache.remove("a");
+    assertEquals(20, cache.weightedSize());
+    ticker.advance(10, TimeUnit.SECONDS);
+    assertEquals(0, cache.weightedSize());
+  }
+
+  @Test
+  public void test_h_GetAllInLruOrder() {
+    LruCacheWheel<String, Integer> cache =
+        new LruCacheWheel<String, Integer>(10, 0, 10, TimeUnit.SECONDS, ticker);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    ticker.advance(5, TimeUnit.SECONDS);
+    cache.put("c", 3);
+    cache.get("b");
+    assertEquals("[a=1, c=3, b=2]", cache.getAll().toString());
+    ticker.advance(6, TimeUnit.SECONDS);
+    assertEquals("[c=3, b=2]", cache.getAll().toString());
+  }
+
+  @Test
+  public void test_i_ConcurrentModeLruEviction() {
+    LruCacheWheel<String, Integer> cache = new LruCacheWheel<String, Integer>(3, true);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    // the hit sits in the read buffer until a drain
+    cache.cleanUp();
+    cache.put("d", 4);
+    cache.put("a", 11);
+    assertEquals(Integer.valueOf(11), cache.get("a"));
+    assertFalse(cache.containsKey("b"));
+    assertEquals(Integer.valueOf(3), cache.remove("c"));
+    assertNull(cache.get("c"));
+    assertEquals(2, cache.weightedSize());
+    assertEquals("[d=4, a=11]", cache.getAll().toString());
+  }
+
+  @Test
+  public void test_j_ConcurrentModeExpiration() {
+    LruCacheWheel<String, Integer> cache = new LruCacheWheel<String, Integer>(10,
+        LruCacheWheelTest.<String, Integer>unitWeigher(), 0, 10, TimeUnit.SECONDS, ticker, true);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    ticker.advance(6, TimeUnit.SECONDS);
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    ticker.advance(6, TimeUnit.SECONDS);
+    assertNull(cache.get("b"));
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    cache.cleanUp();
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.weightedSize());
+  }
+
+  @Test
+  public void test_k_ConcurrentModeStress() throws InterruptedException {
+    final LruCacheWheel<Integer, Integer> cache = new LruCacheWheel<Integer, Integer>(100, true);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Random random = new Random(seed);
+            for (int i = 0; i < 50000; i++) {
+              int key = random.nextInt(400);
+              int op = random.nextInt(10);
+              if (op < 6) {
+                Integer value = cache.get(key);
+                if (value != null && value != key) {
+                  throw new AssertionError(key + " -> " + value);
+                }
+              } else if (op < 9) {
+                cache.put(key, key);
+              } else {
+                cache.remove(key);
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    cache.cleanUp();
+    // the list, the weight & the index agree once the buffers are drained
+    assertTrue(cache.size() <= 100);
+    assertEquals(cache.size(), cache.weightedSize());
+    assertEquals(cache.size(), cache.getAll().size());
+    for (Map.Entry<Integer, Integer> entry : cache.getAll()) {
+      assertEquals(entry.getKey(), entry.getValue());
+      assertTrue(cache.containsKey(entry.getKey()));
+    }
+  }
+
+  private static <K, V> Weigher<K, V> unitWeigher() {
+    return new Weigher<K, V>() {
+      @Override
+      public int weigh(K key, V value) {
+        return 1;
+      }
+    };
+  }
+
+  static final class FakeTicker implements Ticker {
+    private long nanos = 1234567L;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class OffHeapLruCacheTest {
+
+  @Test
+  public void test_a_PutGet() {
+    OffHeapLruCache<String, String> cache =
+        new OffHeapLruCache<String, String>(4, 64, Serializer.STRING, Serializer.STRING);
+    cache.put("a", "hello");
+    cache.put("a", "world!");
+    cache.put("b", "x");
+    assertEquals("world!", cache.get("a"));
+    assertEquals("x", cache.get("b"));
+    assertNull(cache.get("c"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void test_b_LruEviction() {
+    OffHeapLruCache<String, String> cache =
+        new OffHeapLruCache<String, String>(3, 64, Serializer.STRING, Serializer.STRING);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.put("c", "3");
+    cache.get("a");
+    cache.put("d", "4");
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_c_EntryTooLarge() {
+    OffHeapLruCache<String, String> cache =
+        new OffHeapLruCache<String, String>(3, 32, Serializer.STRING, Serializer.STRING);
+    cache.put("a", "a value that does not fit in the slot");
+  }
+
+  @Test
+  public void test_d_MatchesReferenceLru() {
+    final int capacity = 100;
+    OffHeapLruCache<Long, Long> cache =
+        new OffHeapLruCache<Long, Long>(capacity, 40, Serializer.LONG, Serializer.LONG);
+    Map<Long, Long> reference = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+        return size() > capacity;
+      }
+    };
+    Random random = new Random(42);
+    for (int i = 0; i < 50000; i++) {
+      long key = random.nextInt(300);
+      int op = random.nextInt(10);
+      if (op < 5) {
+        assertEquals(reference.get(key), cache.get(key));
+      } else if (op < 9) {
+        reference.put(key, (long) i);
+        cache.put(key, (long) i);
+      } else {
+        assertEquals(reference.remove(key) != null, cache.remove(key));
+      }
+    }
+    assertEquals(reference.size(), cache.size());
+    Map<Long, Long> copy = new HashMap<Long, Long>(reference);
+    for (Map.Entry<Long, Long> entry : copy.entrySet()) {
+      assertEquals(entry.getValue(), cache.get(entry.getKey()));
+    }
+  }
+
+  @Test
+  public void test_e_Clear() {
+    OffHeapLruCache<String, String> cache =
+        new OffHeapLruCache<String, String>(3, 64, Serializer.STRING, Serializer.STRING);
+    cache.put("a", "1");
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertFalse(cache.containsKey("a"));
+    cache.put("b", "2");
+    assertEquals("2", cache.get("b"));
+  }
+}
@@ -0,0 +1,198 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ShardedCacheTest {
+  private final static int KEYS = 30000;
+
+  @Test
+  public void test_a_PutGet() {
+    ShardedCache<String, Integer> cache = new ShardedCache<String, Integer>();
+    assertNull(cache.get("a"));
+    assertNull(cache.shardFor("a"));
+    cache.addShard("s1", ShardedCache.shard(new ConcurrentLruCache<String, Integer>(100)));
+    cache.addShard("s2", ShardedCache.shard(new LruCacheWheel<String, Integer>(100)));
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    assertEquals(Integer.valueOf(2), cache.remove("b"));
+    assertNull(cache.get("b"));
+    assertEquals(1, cache.size());
+    assertEquals("[s1, s2]", cache.shardNames().toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void test_b_PutWithoutShard() {
+    new ShardedCache<String, Integer>().put("a", 1);
+  }
+
+  @Test
+  public void test_c_AddShardMovesOneNth() {
+    ShardedCache<Integer, Integer> cache = newCache(3);
+    Map<Integer, String> owners = new HashMap<Integer, String>();
+    for (int key = 0; key < KEYS; key++) {
+      cache.put(key, key);
+      owners.put(key, cache.shardFor(key));
+    }
+    int moved = cache.addShard("s3", ShardedCache.shard(new ConcurrentLruCache<Integer, Integer>(
+        KEYS)));
+    // ~1/4 of the keys, w/i a generous margin
+    assertTrue("moved " + moved, moved > KEYS / 4 * 0.75 && moved < KEYS / 4 * 1.25);
+    int changed = 0;
+    for (int key = 0; key < KEYS; key++) {
+      String owner = cache.shardFor(key);
+      if (!owner.equals(owners.get(key))) {
+        assertEquals("s3", owner);
+        changed++;
+      }
+      assertEquals(Integer.valueOf(key), cache.get(key));
+    }
+    assertEquals(moved, changed);
+    assertEquals(KEYS, cache.size());
+  }
+
+  @Test
+  public void test_d_RemoveShardMovesItsOwn() {
+    ShardedCache<Integer, Integer> cache = newCache(4);
+    Map<Integer, String> owners = new HashMap<Integer, String>();
+    for (int key = 0; key < KEYS; key++) {
+      cache.put(key, key);
+      owners.put(key, cache.shardFor(key));
+    }
+    CacheShard<Integer, Integer> removed = cache.removeShard("s1");
+    assertEquals(0, removed.size());
+    assertNull(cache.removeShard("s1"));
+    for (int key = 0; key < KEYS; key++) {
+      if (!owners.get(key).equals("s1")) {
+        assertEquals(owners.get(key), cache.shardFor(key));
+      }
+      assertEquals(Integer.valueOf(key), cache.get(key));
+    }
+    assertEquals(KEYS, cache.size());
+  }
+
+  @Test
+  public void test_e_ShardStats() {
+    ShardedCache<Integer, Integer> cache = newCache(4);
+    for (int key = 0; key < KEYS; key++) {
+      cache.put(key, key);
+      cache.get(key);
+      cache.get(-key - 1);
+    }
+    Map<String, CacheStats> stats = cache.shardStats();
+    assertEquals(4, stats.size());
+    long hits = 0;
+    for (CacheStats shardStats : stats.values()) {
+      // the virtual nodes keep the shards w/i a reasonable balance
+      assertTrue(shardStats.toString(), shardStats.weightedSize() > KEYS / 4 * 0.6);
+      assertTrue(shardStats.toString(), shardStats.weightedSize() < KEYS / 4 * 1.4);
+      hits += shardStats.hitCount();
+      assertEquals(shardStats.weightedSize(), shardStats.hitCount());
+    }
+    assertEquals(KEYS, hits);
+  }
+
+  @Test
+  public void test_f_ReadsDuringRebalance() throws InterruptedException {
+    final ShardedCache<Integer, Integer> cache = newCache(2);
+    for (int key = 0; key < 2000; key++) {
+      cache.put(key, key);
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread[] readers = new Thread[4];
+    for (int t = 0; t < readers.length; t++) {
+      readers[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (!done.get()) {
+            for (int key = 0; key < 2000; key++) {
+              if (cache.get(key) == null) {
+                failure.compareAndSet(null, "missed " + key);
+              }
+            }
+          }
+        }
+      });
+      readers[t].start();
+    }
+    for (int i = 0; i < 20; i++) {
+      cache.addShard("x" + i, ShardedCache.shard(new ConcurrentLruCache<Integer, Integer>(KEYS)));
+      cache.removeShard("x" + i);
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertNull(failure.get());
+  }
+
+  @Test
+  public void test_g_WritesDuringRebalance() throws InterruptedException {
+    final ShardedCache<Integer, Integer> cache = newCache(2);
+    final AtomicBoolean done = new AtomicBoolean();
+    // every writer owns the keys w/ key % writers == t and remembers their last value
+    final int writers = 4;
+    final Integer[][] expected = new Integer[writers][2000];
+    Thread[] threads = new Thread[writers];
+    for (int t = 0; t < writers; t++) {
+      final int id = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Random random = new Random(id);
+          for (int round = 0; !done.get(); round++) {
+            int key = writers * random.nextInt(2000 / writers) + id;
+            if (random.nextInt(4) == 0) {
+              cache.remove(key);
+              expected[id][key] = null;
+            } else {
+              cache.put(key, round);
+              expected[id][key] = round;
+            }
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (int i = 0; i < 20; i++) {
+      cache.addShard("x" + i, ShardedCache.shard(new ConcurrentLruCache<Integer, Integer>(KEYS)));
+      cache.removeShard("x" + i);
+    }
+    done.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    int size = 0;
+    for (int key = 0; key < 2000; key++) {
+      Integer value = expected[key % writers][key];
+      assertEquals("key " + key, value, cache.get(key));
+      if (value != null) {
+        size++;
+      }
+    }
+    // no stale copy is left behind on a former owner
+    assertEquals(size, cache.size());
+  }
+
+  private static ShardedCache<Integer, Integer> newCache(int shards) {
+    ShardedCache<Integer, Integer> cache = new ShardedCache<Integer, Integer>();
+    for (int i = 0; i < shards; i++) {
+      cache.addShard("s" + i, ShardedCache.shard(new ConcurrentLruCache<Integer, Integer>(KEYS)));
+    }
+    return cache;
+  }
+}
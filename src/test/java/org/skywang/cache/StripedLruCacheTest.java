@@ -0,0 +1,135 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class StripedLruCacheTest {
+
+  @Test
+  public void test_a_SegmentCount() {
+    assertEquals(8, new StripedLruCache<String, Integer>(100, 8).segmentCount());
+    assertEquals(8, new StripedLruCache<String, Integer>(100, 12).segmentCount());
+    assertEquals(4, new StripedLruCache<String, Integer>(5, 16).segmentCount());
+    assertEquals(1, new StripedLruCache<String, Integer>(1, 16).segmentCount());
+  }
+
+  @Test
+  public void test_b_PutGet() {
+    StripedLruCache<String, Integer> cache = new StripedLruCache<String, Integer>(16, 4);
+    assertNull(cache.put("a", 1));
+    assertEquals(Integer.valueOf(1), cache.put("a", 2));
+    assertEquals(Integer.valueOf(2), cache.get("a"));
+    assertTrue(cache.containsKey("a"));
+    assertNull(cache.get("b"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void test_c_CapacityBound() {
+    StripedLruCache<Integer, Integer> cache = new StripedLruCache<Integer, Integer>(64, 8);
+    for (int i = 0; i < 10000; i++) {
+      cache.put(i, i);
+    }
+    assertTrue(cache.size() <= 64);
+    assertEquals(cache.size(), cache.getAll().size());
+  }
+
+  @Test
+  public void test_d_LruInSegment() {
+    StripedLruCache<String, Integer> cache = new StripedLruCache<String, Integer>(3, 1);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.put("c", 3);
+    cache.get("a");
+    cache.put("d", 4);
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+  }
+
+  @Test
+  public void test_e_ZeroCapacity() {
+    StripedLruCache<String, Integer> cache = new StripedLruCache<String, Integer>(0);
+    cache.put("a", 1);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void test_f_ConcurrentAccess() throws InterruptedException {
+    final StripedLruCache<Integer, Integer> cache = new StripedLruCache<Integer, Integer>(256, 16);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int seed = t;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 20000; i++) {
+              int key = (i * 31 + seed) % 1024;
+              Integer value = cache.get(key);
+              if (value != null && value.intValue() != key) {
+                throw new AssertionError("unexpected value " + value + " for key " + key);
+              }
+              cache.put(key, key);
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertTrue(cache.size() <= 256);
+  }
+
+  @Test
+  public void test_g_Clear() {
+    StripedLruCache<String, Integer> cache = new StripedLruCache<String, Integer>(8);
+    cache.put("a", 1);
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void test_h_BulkOperations() {
+    StripedLruCache<Integer, Integer> cache = new StripedLruCache<Integer, Integer>(1000, 8);
+    Map<Integer, Integer> entries = new HashMap<Integer, Integer>();
+    for (int i = 0; i < 200; i++) {
+      entries.put(i, i * 10);
+    }
+    cache.putAll(entries);
+    assertEquals(200, cache.size());
+
+    List<Integer> keys = new ArrayList<Integer>();
+    for (int i = 150; i < 250; i++) {
+      keys.add(i);
+    }
+    Map<Integer, Integer> found = cache.getAll(keys);
+    assertEquals(50, found.size());
+    assertEquals(Integer.valueOf(1990), found.get(199));
+    assertNull(found.get(200));
+
+    cache.invalidateAll(keys);
+    assertEquals(150, cache.size());
+    assertFalse(cache.containsKey(150));
+    assertEquals(Integer.valueOf(1490), cache.get(149));
+  }
+}
@@ -0,0 +1,95 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TinyLfuCacheTest {
+
+  @Test
+  public void test_a_SketchFrequency() {
+    FrequencySketch<Integer> sketch = new FrequencySketch<Integer>(512);
+    for (int i = 0; i < 5; i++) {
+      sketch.increment(42);
+    }
+    assertEquals(5, sketch.frequency(42));
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(7);
+    }
+    assertEquals(15, sketch.frequency(7));
+  }
+
+  @Test
+  public void test_b_SketchAging() {
+    FrequencySketch<Integer> sketch = new FrequencySketch<Integer>(16);
+    for (int i = 0; i < 8; i++) {
+      sketch.increment(1);
+    }
+    // 160 increments complete a sample, every counter is halved
+    for (int i = 0; i < 1000; i++) {
+      sketch.increment(1000 + i);
+    }
+    assertTrue(sketch.frequency(1) < 8);
+  }
+
+  @Test
+  public void test_c_PutGet() {
+    TinyLfuCache<String, Integer> cache = new TinyLfuCache<String, Integer>(10);
+    assertNull(cache.put("a", 1));
+    assertEquals(Integer.valueOf(1), cache.put("a", 2));
+    assertEquals(Integer.valueOf(2), cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(1, cache.hitCount());
+    assertEquals(1, cache.missCount());
+    assertEquals(0.5, cache.hitRate(), 1e-9);
+  }
+
+  @Test
+  public void test_d_CapacityBound() {
+    TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<Integer, Integer>(50);
+    for (int i = 0; i < 10000; i++) {
+      cache.put(i % 300, i);
+      cache.get(i % 7);
+    }
+    assertTrue(cache.size() <= 50);
+    assertEquals(cache.size(), cache.getAll().size());
+  }
+
+  @Test
+  public void test_e_ScanResistance() {
+    TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<Integer, Integer>(100);
+    for (int round = 0; round < 20; round++) {
+      for (int key = 0; key < 50; key++) {
+        if (cache.get(key) == null) {
+          cache.put(key, key);
+        }
+      }
+    }
+    for (int key = 1000; key < 5000; key++) {
+      cache.put(key, key);
+    }
+    int survivors = 0;
+    for (int key = 0; key < 50; key++) {
+      if (cache.containsKey(key)) {
+        survivors++;
+      }
+    }
+    assertTrue("hot keys evicted by a scan: " + survivors, survivors >= 45);
+  }
+
+  @Test
+  public void test_f_ZeroAndTinyCapacity() {
+    TinyLfuCache<Integer, Integer> empty = new TinyLfuCache<Integer, Integer>(0);
+    empty.put(1, 1);
+    assertEquals(0, empty.size());
+    TinyLfuCache<Integer, Integer> single = new TinyLfuCache<Integer, Integer>(1);
+    single.put(1, 1);
+    single.put(2, 2);
+    assertEquals(1, single.size());
+  }
+}
@@ -0,0 +1,142 @@
+package org.skywang.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TwoTierCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void test_a_SpillAndPromote() throws IOException {
+    TwoTierCache<String, String> cache = new TwoTierCache<String, String>(2,
+        folder.getRoot().toPath(), 1 << 20, Serializer.STRING, Serializer.STRING);
+    try {
+      cache.put("a", "1");
+      cache.put("b", "2");
+      cache.put("c", "3");
+      assertEquals(2, cache.heapSize());
+      assertEquals(1, cache.diskSize());
+      assertTrue(cache.containsKey("a"));
+
+      // "a" comes back from the log, "b" goes there
+      assertEquals("1", cache.get("a"));
+      assertEquals(2, cache.heapSize());
+      assertEquals(1, cache.diskSize());
+      assertEquals("2", cache.get("b"));
+      assertNull(cache.get("x"));
+      assertEquals(2, cache.diskHitCount());
+      assertEquals(0, cache.heapHitCount());
+      assertEquals(1, cache.missCount());
+      assertEquals(3, cache.size());
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void test_b_PutAndRemove() throws IOException {
+    TwoTierCache<String, String> cache = new TwoTierCache<String, String>(1,
+        folder.getRoot().toPath(), 1 << 20, Serializer.STRING, Serializer.STRING);
+    try {
+      cache.put("a", "1");
+      cache.put("b", "2");
+      // the stale copy in the log is dropped
+      cache.put("a", "11");
+      assertEquals(2, cache.size());
+      assertEquals("2", cache.remove("b"));
+      assertEquals("11", cache.remove("a"));
+      assertNull(cache.remove("a"));
+      assertEquals(0, cache.size());
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void test_c_LogBoundedFifo() throws IOException {
+    // every record is 8 + 1 + 1 bytes
+    LogStore<String, String> log = new LogStore<String, String>(folder.getRoot().toPath(), 25,
+        Serializer.STRING, Serializer.STRING);
+    try {
+      log.put("a", "1");
+      log.put("b", "2");
+      log.put("c", "3");
+      log.put("a", "4");
+      assertFalse(log.containsKey("b"));
+      assertEquals("3", log.get("c"));
+      assertEquals("4", log.get("a"));
+      assertEquals(20, log.liveBytes());
+      assertEquals(40, log.fileBytes());
+    } finally {
+      log.close();
+    }
+  }
+
+  @Test
+  public void test_d_Compaction() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    LogStore<Long, String> log = new LogStore<Long, String>(directory, 1 << 30, Serializer.LONG,
+        Serializer.STRING);
+    try {
+      for (long i = 0; i < 1000; i++) {
+        log.put(i, "v" + i);
+      }
+      for (long i = 0; i < 1000; i += 2) {
+        log.put(i, "w" + i);
+        log.remove(i + 1);
+      }
+      long liveBytes = log.liveBytes();
+      log.compact();
+      assertEquals(liveBytes, log.fileBytes());
+      assertEquals(500, log.size());
+      assertEquals("w998", log.get(998L));
+      assertNull(log.get(999L));
+      assertEquals(1, directory.toFile().list().length);
+
+      // appends go to the new log
+      log.put(999L, "x");
+      assertEquals("x", log.get(999L));
+    } finally {
+      log.close();
+    }
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void test_e_BackgroundCompaction() throws IOException, InterruptedException {
+    File directory = folder.getRoot();
+    LogStore<Long, String> log = new LogStore<Long, String>(directory.toPath(), 1 << 30,
+        Serializer.LONG, Serializer.STRING);
+    try {
+      String value = new String(new char[1000]);
+      // the same 10 keys over & over, most of the log is dead records
+      for (long i = 0; i < 4000; i++) {
+        log.put(i % 10, value);
+      }
+      long deadline = System.currentTimeMillis() + 10000;
+      while (log.fileBytes() > 1 << 20 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(log.fileBytes() < 1 << 20);
+      assertEquals(10, log.size());
+      assertEquals(value, log.get(3L));
+    } finally {
+      log.close();
+    }
+  }
+}
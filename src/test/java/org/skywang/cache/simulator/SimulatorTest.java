@@ -0,0 +1,109 @@
+package org.skywang.cache.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SimulatorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void test_a_ReadText() throws IOException {
+    File trace = writeText("1\n22\r\n  333\tuser:7\nuser:7\n4");
+    TraceReader reader = new TraceReader(trace.toPath(), TraceReader.Format.TEXT);
+    try {
+      assertEquals(1, reader.next());
+      assertEquals(22, reader.next());
+      assertEquals(333, reader.next());
+      long hashed = reader.next();
+      assertEquals(hashed, reader.next());
+      assertNotEquals(7, hashed);
+      assertEquals(4, reader.next());
+      assertFalse(reader.hasNext());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void test_b_ReadBinary() throws IOException {
+    File trace = folder.newFile();
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(trace));
+    out.writeLong(Long.MIN_VALUE);
+    out.writeLong(42);
+    // a trailing partial long
+    out.writeShort(1);
+    out.close();
+
+    TraceReader reader = new TraceReader(trace.toPath(), TraceReader.Format.BINARY);
+    try {
+      assertEquals(Long.MIN_VALUE, reader.next());
+      assertTrue(reader.hasNext());
+      assertEquals(42, reader.next());
+      assertFalse(reader.hasNext());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void test_c_EmptyTrace() throws IOException, InterruptedException {
+    File trace = writeText(" \n\n");
+    Simulator simulator = new Simulator(trace.toPath(), TraceReader.Format.TEXT);
+    assertEquals(0.0, simulator.replay("LruCacheWheel", 4), 0.0);
+  }
+
+  @Test
+  public void test_d_LoopHitRates() throws IOException, InterruptedException {
+    // 10 passes over 0..99, a LRU smaller than the loop never hits
+    StringBuilder sb = new StringBuilder();
+    for (int pass = 0; pass < 10; pass++) {
+      for (int key = 0; key < 100; key++) {
+        sb.append(key).append('\n');
+      }
+    }
+    Simulator simulator = new Simulator(writeText(sb.toString()).toPath(),
+        TraceReader.Format.TEXT);
+    String[] policies = {"LruCacheWheel", "ConcurrentLruCache", "LongLongLruCache"};
+    int[] capacities = {50, 100};
+    double[][] hitRates = simulator.simulate(policies, capacities);
+    for (int i = 0; i < policies.length; i++) {
+      assertEquals(policies[i], 0.0, hitRates[i][0], 0.0);
+      assertEquals(policies[i], 0.9, hitRates[i][1], 1e-9);
+    }
+    // the frequency filter keeps part of the loop
+    assertTrue(simulator.replay("TinyLfuCache", 50) > 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_e_UnknownPolicy() throws IOException, InterruptedException {
+    Simulator simulator = new Simulator(writeText("1\n").toPath(), TraceReader.Format.TEXT);
+    simulator.simulate(new String[] {"Fifo"}, new int[] {1});
+  }
+
+  private File writeText(String text) throws IOException {
+    File trace = folder.newFile();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(trace), StandardCharsets.UTF_8);
+    writer.write(text);
+    writer.close();
+    return trace;
+  }
+}
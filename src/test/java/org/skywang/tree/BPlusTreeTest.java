@@ -0,0 +1,79 @@
+package org.skywang.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BPlusTreeTest {
+
+  @Test
+  public void test_a_OrderedOperations() {
+    OrderedSymbolTableChecks.checkOrderedOperations(new BPlusTree<String, Integer>(4));
+  }
+
+  @Test
+  public void test_b_SortedInsertsAreShallow() {
+    BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(64);
+    for (int i = 0; i < 5000; i++) {
+      tree.put(i, i);
+    }
+    // half full leaves of 32 keys & inner nodes of 32 children
+    assertTrue("height " + tree.height(), tree.height() <= 3);
+    assertEquals(Integer.valueOf(4321), tree.select(4321));
+    assertEquals(4321, tree.rank(4321));
+    assertEquals("[2998, 2999, 3000, 3001]", tree.keys(2998, 3001).toString());
+  }
+
+  @Test
+  public void test_c_DeleteShrinksTree() {
+    BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(4);
+    for (int i = 0; i < 200; i++) {
+      tree.put(i, i);
+    }
+    int height = tree.height();
+    tree.deleteMin();
+    tree.deleteMax();
+    assertEquals(Integer.valueOf(1), tree.min());
+    assertEquals(Integer.valueOf(198), tree.max());
+    for (int i = 1; i < 190; i++) {
+      tree.delete(i);
+    }
+    tree.delete(1000);
+    assertEquals(9, tree.size());
+    assertTrue(tree.height() < height);
+    assertFalse(tree.contain(10));
+    assertEquals(Integer.valueOf(190), tree.ceil(10));
+    // put w/ a null value deletes the key
+    tree.put(190, null);
+    assertFalse(tree.contain(190));
+  }
+
+  @Test
+  public void test_d_RandomAgainstTreeMap() {
+    OrderedSymbolTableChecks.checkAgainstTreeMap(new BPlusTree<Integer, Integer>(5), 20, 5000, 600);
+  }
+
+  @Test
+  public void test_e_Empty() {
+    BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>();
+    assertTrue(tree.isEmpty());
+    assertNull(tree.min());
+    assertNull(tree.max());
+    assertNull(tree.floor(1));
+    assertNull(tree.select(0));
+    assertTrue(tree.keys().isEmpty());
+    assertTrue(tree.keys(0, 10).isEmpty());
+    assertEquals(1, tree.height());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_f_OrderTooSmall() {
+    new BPlusTree<Integer, Integer>(3);
+  }
+}
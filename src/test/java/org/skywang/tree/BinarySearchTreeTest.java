@@ -0,0 +1,295 @@
+package org.skywang.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BinarySearchTreeTest {
+  // tens of thousands of levels, the recursive lookups overflow a default call stack
+  private final static int DEEP = 20000;
+
+  @Test
+  public void test_a_Keys() {
+    BinarySearchTree<String, Integer> tree = newTree();
+    assertEquals("[A, C, E, H, L, M, P, R, S, X]", tree.keys().toString());
+    assertEquals("[E, H, L, M]", tree.keys("D", "M").toString());
+    assertEquals(4, tree.size("D", "M"));
+    assertEquals(3, tree.rank("H"));
+    assertEquals(0, tree.rank("0"));
+    assertEquals(10, tree.rank("Z"));
+    assertTrue(new BinarySearchTree<String, Integer>().keys().isEmpty());
+  }
+
+  @Test
+  public void test_b_RangeIsLazy() {
+    BinarySearchTree<String, Integer> tree = newTree();
+    StringBuilder keys = new StringBuilder();
+    for (String key : tree.range("B", "Q")) {
+      keys.append(key);
+    }
+    assertEquals("CEHLMP", keys.toString());
+    assertFalse(tree.range("Y", "Z").iterator().hasNext());
+    assertFalse(tree.range("M", "C").iterator().hasNext());
+
+    StringBuilder entries = new StringBuilder();
+    for (Map.Entry<String, Integer> entry : tree.entries("R", "X")) {
+      entries.append(entry.getKey()).append(entry.getValue());
+    }
+    assertEquals("R3S0X7", entries.toString());
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void test_c_RangeFailsFast() {
+    BinarySearchTree<String, Integer> tree = newTree();
+    Iterator<String> keys = tree.range("A", "Z").iterator();
+    keys.next();
+    tree.put("B", 42);
+    keys.next();
+  }
+
+  @Test
+  public void test_d_DegenerateTree() {
+    BinarySearchTree<Integer, Integer> ascending = degenerateTree(DEEP, true);
+    BinarySearchTree<Integer, Integer> descending = degenerateTree(DEEP, false);
+    // a linked list, one level per key, far deeper than the call stack of this thread allows
+    assertEquals(DEEP, ascending.height());
+    assertEquals(DEEP, descending.height());
+    assertEquals(DEEP, ascending.size(0, DEEP - 1));
+    assertEquals(DEEP, descending.size(0, DEEP - 1));
+    assertEquals(Integer.valueOf(DEEP - 1), ascending.get(DEEP - 1));
+    assertEquals(Integer.valueOf(0), descending.get(0));
+    assertNull(ascending.get(DEEP));
+    assertNotNull(ascending.floor(DEEP));
+    assertNotNull(descending.ceil(-1));
+    assertNotNull(ascending.select(DEEP - 1));
+    int expected = 100;
+    for (int key : descending.range(100, DEEP - 101)) {
+      assertEquals(expected++, key);
+    }
+    assertEquals(DEEP - 100, expected);
+    assertEquals(DEEP - 200, ascending.keys(100, DEEP - 101).size());
+  }
+
+  @Test
+  public void test_e_Height() {
+    BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<Integer, Integer>();
+    assertEquals(0, tree.height());
+    tree.put(2, 2);
+    assertEquals(1, tree.height());
+    tree.put(1, 1);
+    tree.put(3, 3);
+    assertEquals(2, tree.height());
+  }
+
+  @Test
+  public void test_f_StreamRange() {
+    BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<Integer, Integer>();
+    Random random = new Random(23);
+    for (int i = 0; i < 300; i++) {
+      int key = random.nextInt(1000);
+      tree.put(key, key);
+    }
+    long expected = 0;
+    for (int key : tree.range(100, 800)) {
+      expected += key;
+    }
+    assertEquals(expected, sum(tree.stream(100, 800)));
+    assertEquals(expected, sum(tree.parallelStream(100, 800)));
+    assertEquals(tree.size(100, 800), tree.parallelStream(100, 800).count());
+    assertEquals(0, tree.stream(800, 100).count());
+  }
+
+  @Test
+  public void test_g_SplitsBySize() {
+    BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<Integer, Integer>();
+    // degenerate, all the keys are in the right spine
+    for (int i = 0; i < 256; i++) {
+      tree.put(i, i);
+    }
+    Spliterator<Map.Entry<Integer, Integer>> suffix = tree.spliterator(10, 209);
+    assertEquals(200, suffix.getExactSizeIfKnown());
+    assertTrue(suffix.hasCharacteristics(Spliterator.SUBSIZED));
+    assertTrue(suffix.hasCharacteristics(Spliterator.SORTED));
+    assertTrue(suffix.getComparator().compare(
+        new AbstractMap.SimpleImmutableEntry<Integer, Integer>(1, 9),
+        new AbstractMap.SimpleImmutableEntry<Integer, Integer>(2, 0)) < 0);
+    Spliterator<Map.Entry<Integer, Integer>> prefix = suffix.trySplit();
+    assertEquals(100, prefix.getExactSizeIfKnown());
+    assertEquals(100, suffix.getExactSizeIfKnown());
+
+    final List<Integer> keys = new ArrayList<Integer>();
+    Consumer<Map.Entry<Integer, Integer>> collect = new Consumer<Map.Entry<Integer, Integer>>() {
+      @Override
+      public void accept(Map.Entry<Integer, Integer> entry) {
+        keys.add(entry.getKey());
+      }
+    };
+    assertTrue(suffix.tryAdvance(collect));
+    assertEquals(Integer.valueOf(110), keys.get(0));
+    // a started part is not split
+    assertNull(suffix.trySplit());
+    assertEquals(99, suffix.estimateSize());
+    prefix.forEachRemaining(collect);
+    assertEquals(101, keys.size());
+    assertEquals(Integer.valueOf(10), keys.get(1));
+    assertEquals(Integer.valueOf(109), keys.get(100));
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void test_h_StreamFailsFast() {
+    final BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<Integer, Integer>();
+    for (int i = 0; i < 10; i++) {
+      tree.put(i, i);
+    }
+    Spliterator<Map.Entry<Integer, Integer>> entries = tree.spliterator(0, 9);
+    tree.delete(5);
+    entries.tryAdvance(new Consumer<Map.Entry<Integer, Integer>>() {
+      @Override
+      public void accept(Map.Entry<Integer, Integer> entry) {
+      }
+    });
+  }
+
+  @Test
+  public void test_i_FromSorted() {
+    int n = 5000;
+    Integer[] keys = new Integer[n];
+    String[] values = new String[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = 2 * i;
+      values[i] = "v" + i;
+    }
+    BinarySearchTree<Integer, String> tree = BinarySearchTree.fromSorted(keys, values);
+    assertEquals(n, tree.size());
+    // floor(lg n) + 1 levels
+    assertEquals(13, tree.height());
+    assertEquals("v1234", tree.get(2468));
+    assertEquals(1234, tree.rank(2468));
+    assertEquals(1235, tree.size(0, 2468));
+    assertEquals("[9996, 9998]", tree.keys(9995, 20000).toString());
+  }
+
+  @Test
+  public void test_j_PutAllMerges() {
+    BinarySearchTree<Integer, String> tree = new BinarySearchTree<Integer, String>();
+    tree.put(1, "a");
+    tree.put(3, "b");
+    tree.put(5, "c");
+    tree.putAll(new Integer[] {0, 3, 4, 6}, new String[] {"x", "y", "z", "w"});
+    assertEquals("[0, 1, 3, 4, 5, 6]", tree.keys().toString());
+    assertEquals("y", tree.get(3));
+    assertEquals("c", tree.get(5));
+    assertEquals(3, tree.height());
+    tree.putAll(new Integer[0], new String[0]);
+    assertEquals(6, tree.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_k_PutAllUnsorted() {
+    new BinarySearchTree<Integer, String>().putAll(new Integer[] {1, 3, 2},
+        new String[] {"a", "b", "c"});
+  }
+
+  @Test
+  public void test_l_Rebalance() {
+    BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<Integer, Integer>();
+    for (int i = 0; i < 255; i++) {
+      tree.put(i, i);
+    }
+    assertEquals(255, tree.height());
+    tree.rebalance();
+    assertEquals(8, tree.height());
+    assertEquals(255, tree.size());
+    assertEquals(100, tree.rank(100));
+    assertEquals(Integer.valueOf(100), tree.get(100));
+    new BinarySearchTree<Integer, Integer>().rebalance();
+
+    // not a perfect tree, the bottom level is partly filled
+    BinarySearchTree<Integer, Integer> random = new BinarySearchTree<Integer, Integer>();
+    Random keys = new Random(24);
+    while (random.size() < 1000) {
+      int key = keys.nextInt(100000);
+      random.put(key, key);
+    }
+    String before = random.keys().toString();
+    random.rebalance();
+    assertEquals(10, random.height());
+    assertEquals(1000, random.size());
+    assertEquals(before, random.keys().toString());
+    // the subtree sizes are kept through the rotations
+    int rank = 0;
+    for (int key : random.range(0, 100000)) {
+      assertEquals(rank++, random.rank(key));
+    }
+  }
+
+  @Test
+  public void test_m_StreamDeepTree() {
+    BinarySearchTree<Integer, Integer> tree = degenerateTree(DEEP, true);
+    assertEquals(DEEP, tree.stream(0, DEEP - 1).count());
+    assertEquals((long) DEEP * (DEEP - 1) / 2, sum(tree.parallelStream(0, DEEP - 1)));
+    assertEquals(DEEP - 200, tree.parallelStream(100, DEEP - 101).count());
+    assertEquals(100, tree.stream(DEEP - 100, DEEP + 100).count());
+  }
+
+  @Test
+  public void test_n_PutAllSmallBatch() {
+    BinarySearchTree<Integer, Integer> tree = degenerateTree(DEEP, true);
+    // put key by key on the test thread, the tree is not relinked, -1 becomes the left child of
+    // the root
+    tree.putAll(new Integer[] {-1, 100, DEEP}, new Integer[] {-1, 42, DEEP});
+    assertEquals(DEEP + 1, tree.height());
+    assertEquals(DEEP + 2, tree.size());
+    assertEquals(Integer.valueOf(42), tree.get(100));
+    assertEquals(Integer.valueOf(-1), tree.get(-1));
+    assertEquals(DEEP + 1, tree.rank(DEEP));
+  }
+
+  // one level per key, far deeper than a recursive descent could go on this thread
+  private static BinarySearchTree<Integer, Integer> degenerateTree(int n, boolean ascending) {
+    BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<Integer, Integer>();
+    for (int i = 0; i < n; i++) {
+      int key = ascending ? i : n - 1 - i;
+      tree.put(key, key);
+    }
+    assertEquals(n, tree.size());
+    return tree;
+  }
+
+  private static long sum(Stream<Map.Entry<Integer, Integer>> entries) {
+    return entries.mapToLong(new ToLongFunction<Map.Entry<Integer, Integer>>() {
+      @Override
+      public long applyAsLong(Map.Entry<Integer, Integer> entry) {
+        return entry.getValue();
+      }
+    }).sum();
+  }
+
+  private static BinarySearchTree<String, Integer> newTree() {
+    String[] keys = {"S", "E", "A", "R", "C", "H", "E", "X", "A", "M", "P", "L", "E"};
+    BinarySearchTree<String, Integer> tree = new BinarySearchTree<String, Integer>();
+    for (int i = 0; i < keys.length; i++) {
+      tree.put(keys[i], i);
+    }
+    return tree;
+  }
+}
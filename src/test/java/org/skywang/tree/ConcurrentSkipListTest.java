@@ -0,0 +1,123 @@
+package org.skywang.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentSkipListTest {
+
+  @Test
+  public void test_a_OrderedOperations() {
+    OrderedSymbolTableChecks.checkOrderedOperations(new ConcurrentSkipList<String, Integer>());
+  }
+
+  @Test
+  public void test_b_RandomAgainstTreeMap() {
+    OrderedSymbolTableChecks.checkAgainstTreeMap(new ConcurrentSkipList<Integer, Integer>(),
+        21, 20000, 1000);
+  }
+
+  @Test
+  public void test_c_ConcurrentWriters() throws InterruptedException {
+    final ConcurrentSkipList<Integer, Integer> list = new ConcurrentSkipList<Integer, Integer>();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Random random = new Random(seed);
+            for (int i = 0; i < 20000; i++) {
+              int key = random.nextInt(500);
+              int op = random.nextInt(10);
+              if (op < 4) {
+                Integer value = list.get(key);
+                if (value != null && value.intValue() != key) {
+                  throw new AssertionError(key + " -> " + value);
+                }
+              } else if (op < 8) {
+                list.put(key, key);
+              } else {
+                list.delete(key);
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    // the size counter & the links agree once the writers are done
+    int count = 0;
+    Integer last = null;
+    for (int i = 0; i < list.size(); i++) {
+      Integer key = list.select(i);
+      assertTrue(last == null || last < key);
+      assertEquals(key, list.get(key));
+      last = key;
+      count++;
+    }
+    assertNull(list.select(count));
+    assertEquals(count, list.rank(1000));
+  }
+
+  @Test
+  public void test_d_ReadersSeeStableKeys() throws InterruptedException {
+    final ConcurrentSkipList<Integer, Integer> list = new ConcurrentSkipList<Integer, Integer>();
+    // the even keys are never deleted, the odd keys come and go
+    for (int key = 0; key < 1000; key += 2) {
+      list.put(key, key);
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<String> failure = new AtomicReference<String>();
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Random random = new Random(4);
+        while (!done.get()) {
+          int key = 2 * random.nextInt(500) + 1;
+          if (random.nextBoolean()) {
+            list.put(key, key);
+          } else {
+            list.delete(key);
+          }
+        }
+      }
+    });
+    writer.start();
+    for (int round = 0; round < 200; round++) {
+      for (int key = 0; key < 1000; key += 2) {
+        Integer floor = list.floor(key);
+        if (floor == null || floor != key) {
+          failure.compareAndSet(null, "floor of " + key + " was " + floor);
+        }
+      }
+      Integer ceil = list.ceil(999);
+      if (ceil != null && ceil != 999) {
+        failure.compareAndSet(null, "ceil of 999 was " + ceil);
+      }
+    }
+    done.set(true);
+    writer.join();
+    assertNull(failure.get());
+    assertFalse(list.isEmpty());
+    assertEquals(Integer.valueOf(0), list.min());
+  }
+}
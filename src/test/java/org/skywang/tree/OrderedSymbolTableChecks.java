@@ -0,0 +1,183 @@
+package org.skywang.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.skywang.linear.HelloQueue;
+
+/**
+ * the checks every OrderedSymbolTable of this package has to pass, the structure specific tests
+ * stay in the test class of the structure. the persistent tree does not change in place, it is
+ * checked through the persistent() adapter.
+ */
+final class OrderedSymbolTableChecks {
+
+  private OrderedSymbolTableChecks() {
+  }
+
+  // the operations on the keys of "SEARCHEXAMPLE", the value of a key is its last index
+  static void checkOrderedOperations(OrderedSymbolTable<String, Integer> table) {
+    String[] keys = {"S", "E", "A", "R", "C", "H", "E", "X", "A", "M", "P", "L", "E"};
+    for (int i = 0; i < keys.length; i++) {
+      table.put(keys[i], i);
+    }
+    assertEquals(10, table.size());
+    assertFalse(table.isEmpty());
+    assertTrue(table.contain("R"));
+    assertFalse(table.contain("B"));
+    assertEquals(Integer.valueOf(12), table.get("E"));
+    assertEquals("A", table.min());
+    assertEquals("X", table.max());
+    assertEquals("H", table.floor("I"));
+    assertEquals("L", table.ceil("I"));
+    assertNull(table.floor("0"));
+    assertNull(table.ceil("Y"));
+    assertEquals(3, table.rank("H"));
+    assertEquals("H", table.select(3));
+    assertNull(table.select(10));
+    assertEquals("[E, H, L, M]", table.keys("D", "M").toString());
+    assertEquals(4, table.size("D", "M"));
+    assertEquals("[A, C, E, H, L, M, P, R, S, X]", table.keys().toString());
+
+    table.deleteMin();
+    table.deleteMax();
+    table.delete("H");
+    // put w/ a null value deletes the key
+    table.put("M", null);
+    assertEquals("[C, E, L, P, R, S]", table.keys().toString());
+    assertEquals(6, table.size());
+  }
+
+  // random puts & deletes of keys in [0, keyRange), then every query is compared w/ a TreeMap
+  static void checkAgainstTreeMap(OrderedSymbolTable<Integer, Integer> table, long seed, int ops,
+      int keyRange) {
+    TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    Random random = new Random(seed);
+    for (int i = 0; i < ops; i++) {
+      int key = random.nextInt(keyRange);
+      if (random.nextInt(3) == 0) {
+        table.delete(key);
+        expected.remove(key);
+      } else {
+        table.put(key, i);
+        expected.put(key, i);
+      }
+    }
+    assertEquals(expected.size(), table.size());
+    assertEquals(expected.keySet().toString(), table.keys().toString());
+    for (int key = -1; key <= keyRange; key++) {
+      assertEquals(expected.get(key), table.get(key));
+      assertEquals(expected.floorKey(key), table.floor(key));
+      assertEquals(expected.ceilingKey(key), table.ceil(key));
+      assertEquals(expected.headMap(key).size(), table.rank(key));
+    }
+    int k = 0;
+    for (Integer key : expected.keySet()) {
+      assertEquals(key, table.select(k++));
+    }
+    int lo = keyRange / 4;
+    int hi = keyRange / 2;
+    assertEquals(expected.subMap(lo, true, hi, true).keySet().toString(),
+        table.keys(lo, hi).toString());
+    assertEquals(expected.subMap(lo, true, hi, true).size(), table.size(lo, hi));
+  }
+
+  // a PersistentBinarySearchTree seen as a mutable table, every write swaps in the new version
+  static <Key extends Comparable<Key>, Value> OrderedSymbolTable<Key, Value> persistent(
+      final PersistentBinarySearchTree<Key, Value> empty) {
+    return new OrderedSymbolTable<Key, Value>() {
+      // the latest version, every write replaces it
+      private PersistentBinarySearchTree<Key, Value> tree = empty;
+
+      @Override
+      public void put(Key key, Value value) {
+        tree = tree.put(key, value);
+      }
+
+      @Override
+      public void delete(Key key) {
+        tree = tree.delete(key);
+      }
+
+      @Override
+      public void deleteMin() {
+        tree = tree.deleteMin();
+      }
+
+      @Override
+      public void deleteMax() {
+        tree = tree.deleteMax();
+      }
+
+      @Override
+      public boolean isEmpty() {
+        return tree.isEmpty();
+      }
+
+      @Override
+      public boolean contain(Key key) {
+        return tree.contain(key);
+      }
+
+      @Override
+      public Value get(Key key) {
+        return tree.get(key);
+      }
+
+      @Override
+      public int size() {
+        return tree.size();
+      }
+
+      @Override
+      public Key min() {
+        return tree.min();
+      }
+
+      @Override
+      public Key max() {
+        return tree.max();
+      }
+
+      @Override
+      public Key floor(Key key) {
+        return tree.floor(key);
+      }
+
+      @Override
+      public Key ceil(Key key) {
+        return tree.ceil(key);
+      }
+
+      @Override
+      public int rank(Key key) {
+        return tree.rank(key);
+      }
+
+      @Override
+      public Key select(int k) {
+        return tree.select(k);
+      }
+
+      @Override
+      public HelloQueue<Key> keys() {
+        return tree.keys();
+      }
+
+      @Override
+      public HelloQueue<Key> keys(Key lo, Key hi) {
+        return tree.keys(lo, hi);
+      }
+
+      @Override
+      public int size(Key lo, Key hi) {
+        return tree.size(lo, hi);
+      }
+    };
+  }
+}
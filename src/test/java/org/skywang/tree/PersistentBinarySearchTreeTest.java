@@ -0,0 +1,121 @@
+package org.skywang.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PersistentBinarySearchTreeTest {
+
+  @Test
+  public void test_a_OrderedOperations() {
+    OrderedSymbolTableChecks.checkOrderedOperations(
+        OrderedSymbolTableChecks.persistent(new PersistentBinarySearchTree<String, Integer>()));
+  }
+
+  @Test
+  public void test_b_OldVersionsDoNotChange() {
+    PersistentBinarySearchTree<String, Integer> v0 =
+        new PersistentBinarySearchTree<String, Integer>();
+    PersistentBinarySearchTree<String, Integer> v1 = v0.put("a", 1).put("b", 2);
+    PersistentBinarySearchTree<String, Integer> v2 = v1.put("a", 10).put("c", 3);
+    PersistentBinarySearchTree<String, Integer> v3 = v2.delete("b").deleteMax();
+    assertTrue(v0.isEmpty());
+    assertEquals("[a, b]", v1.keys().toString());
+    assertEquals(Integer.valueOf(1), v1.get("a"));
+    assertEquals("[a, b, c]", v2.keys().toString());
+    assertEquals(Integer.valueOf(10), v2.get("a"));
+    assertEquals("[a]", v3.keys().toString());
+    // nothing to delete, the same version
+    assertSame(v3, v3.delete("z"));
+    assertFalse(v3.put("a", null).contain("a"));
+  }
+
+  @Test
+  public void test_c_SortedInsertsStayShallow() {
+    PersistentBinarySearchTree<Integer, Integer> tree =
+        new PersistentBinarySearchTree<Integer, Integer>();
+    int n = 5000;
+    for (int i = 0; i < n; i++) {
+      tree = tree.put(i, i);
+    }
+    // ~3 lg n for a random BST, far from the n of an unbalanced one
+    assertTrue("height " + tree.height(), tree.height() < 40);
+    assertEquals(n, tree.size());
+    assertEquals(2500, tree.rank(2500));
+  }
+
+  @Test
+  public void test_d_RandomAgainstTreeMap() {
+    OrderedSymbolTableChecks.checkAgainstTreeMap(
+        OrderedSymbolTableChecks.persistent(new PersistentBinarySearchTree<Integer, Integer>()),
+        25, 3000, 500);
+  }
+
+  @Test
+  public void test_e_SnapshotWhileWriting() throws InterruptedException {
+    final AtomicReference<PersistentBinarySearchTree<Integer, Integer>> current =
+        new AtomicReference<PersistentBinarySearchTree<Integer, Integer>>(
+            new PersistentBinarySearchTree<Integer, Integer>());
+    final AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Random random = new Random(5);
+        while (!done.get()) {
+          int key = random.nextInt(1000);
+          PersistentBinarySearchTree<Integer, Integer> tree = current.get();
+          current.set(random.nextBoolean() ? tree.put(key, key) : tree.delete(key));
+        }
+      }
+    });
+    writer.start();
+    try {
+      for (int round = 0; round < 200; round++) {
+        PersistentBinarySearchTree<Integer, Integer> snapshot = current.get();
+        int count = 0;
+        Integer last = null;
+        for (Integer key : snapshot.range(0, 999)) {
+          assertTrue(last == null || last < key);
+          assertEquals(key, snapshot.get(key));
+          last = key;
+          count++;
+        }
+        // the snapshot is consistent w/ itself while the writer moves on
+        assertEquals(snapshot.size(), count);
+      }
+    } finally {
+      done.set(true);
+      writer.join();
+    }
+  }
+
+  @Test
+  public void test_f_CollidingHashesStayShallow() {
+    PersistentBinarySearchTree<Long, Integer> tree =
+        new PersistentBinarySearchTree<Long, Integer>();
+    int n = 5000;
+    for (int i = 0; i < n; i++) {
+      // the high & low words are equal, every key hashes to 0
+      long key = i * ((1L << 32) + 1);
+      assertEquals(0, Long.valueOf(key).hashCode());
+      tree = tree.put(key, i);
+    }
+    // the priorities are random, so the keys are not all stacked in one chain
+    assertTrue("height " + tree.height(), tree.height() < 40);
+    assertEquals(n, tree.size());
+    assertEquals(Integer.valueOf(1234), tree.get(1234 * ((1L << 32) + 1)));
+    tree = tree.put(0L, -1).delete(1L << 32 | 1);
+    assertEquals(n - 1, tree.size());
+    assertEquals(Integer.valueOf(-1), tree.get(0L));
+  }
+}
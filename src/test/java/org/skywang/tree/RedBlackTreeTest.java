@@ -0,0 +1,71 @@
+package org.skywang.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RedBlackTreeTest {
+
+  @Test
+  public void test_a_OrderedOperations() {
+    OrderedSymbolTableChecks.checkOrderedOperations(new RedBlackTree<String, Integer>());
+  }
+
+  @Test
+  public void test_b_SortedInsertsStayBalanced() {
+    RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>();
+    int n = 1000;
+    for (int i = 0; i < n; i++) {
+      tree.put(i, i);
+    }
+    // at most 2 lg n, an unbalanced tree would be n high
+    assertTrue("height " + tree.height(), tree.height() <= 2 * 10);
+    assertEquals(n, tree.size());
+    assertEquals(Integer.valueOf(500), tree.select(500));
+    assertEquals(500, tree.rank(500));
+  }
+
+  @Test
+  public void test_c_Delete() {
+    RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>();
+    for (int i = 0; i < 64; i++) {
+      tree.put(i, i);
+    }
+    tree.deleteMin();
+    tree.deleteMax();
+    assertEquals(Integer.valueOf(1), tree.min());
+    assertEquals(Integer.valueOf(62), tree.max());
+    for (int i = 0; i < 64; i += 2) {
+      tree.delete(i);
+    }
+    tree.delete(1000);
+    assertEquals(31, tree.size());
+    assertFalse(tree.contain(10));
+    assertEquals(Integer.valueOf(11), tree.ceil(10));
+    // put w/ a null value deletes the key
+    tree.put(11, null);
+    assertFalse(tree.contain(11));
+  }
+
+  @Test
+  public void test_d_RandomAgainstTreeMap() {
+    OrderedSymbolTableChecks.checkAgainstTreeMap(new RedBlackTree<Integer, Integer>(), 19, 2000,
+        500);
+  }
+
+  @Test
+  public void test_e_Empty() {
+    RedBlackTree<Integer, Integer> tree = new RedBlackTree<Integer, Integer>();
+    assertTrue(tree.isEmpty());
+    assertNull(tree.min());
+    assertNull(tree.select(0));
+    assertTrue(tree.keys().isEmpty());
+    assertEquals(0, tree.height());
+  }
+}